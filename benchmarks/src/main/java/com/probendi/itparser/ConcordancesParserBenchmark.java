@@ -0,0 +1,60 @@
+package com.probendi.itparser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parsing of a concordances page of 10,000 lines, either one line after another or in chunks within
+ * the common fork-join pool.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcordancesParserBenchmark {
+
+    private static final int PAGE_SIZE = 10_000;
+
+    @Param({"false", "true"})
+    private boolean parallel;
+
+    private String[] page;
+
+    @Setup
+    public void setUp() {
+        String[] lines = Fixtures.lines();
+        page = new String[PAGE_SIZE];
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            page[i] = lines[i % lines.length];
+        }
+    }
+
+    @Benchmark
+    public Set<Entry> parsePage() {
+        ConcordancesParser parser = new ConcordancesParser(parallel ? ForkJoinPool.commonPool() : null);
+        for (String line : page) {
+            parser.accept(line);
+        }
+        return parser.entries();
+    }
+}
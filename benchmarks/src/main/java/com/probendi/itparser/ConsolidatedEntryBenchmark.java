@@ -0,0 +1,75 @@
+package com.probendi.itparser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the encoding of a single {@link ConsolidatedEntry} as a CSV and as a JSON row, either as a new string
+ * or appended to a reused buffer by an {@link EntryEncoder}.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsolidatedEntryBenchmark {
+
+    private final EntryEncoder encoder = new EntryEncoder();
+    private final StringBuilder row = new StringBuilder();
+    private List<ConsolidatedEntry> entries;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        entries = Fixtures.consolidatedEntries(1024);
+    }
+
+    @Benchmark
+    public String toCsv() {
+        return next().toCsv();
+    }
+
+    @Benchmark
+    public String toJson() {
+        return next().toJson();
+    }
+
+    @Benchmark
+    public StringBuilder appendCsv() throws IOException {
+        row.setLength(0);
+        encoder.appendCsv(next(), row);
+        return row;
+    }
+
+    @Benchmark
+    public StringBuilder appendJson() throws IOException {
+        row.setLength(0);
+        encoder.appendJson(next(), row);
+        return row;
+    }
+
+    private ConsolidatedEntry next() {
+        if (++index == entries.size()) {
+            index = 0;
+        }
+        return entries.get(index);
+    }
+}
@@ -0,0 +1,52 @@
+package com.probendi.itparser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the consolidation of the parsed entries by place number and their sorting in each order.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ConsolidationBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"CASE", "PLACE", "WORK"})
+    public EntryOrder order;
+
+    private Set<Entry> entries;
+
+    @Setup
+    public void setUp() {
+        entries = Fixtures.entries(size);
+    }
+
+    @Benchmark
+    public List<ConsolidatedEntry> consolidate() {
+        return Crawler.consolidate(entries, order);
+    }
+}
@@ -0,0 +1,50 @@
+package com.probendi.itparser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Entry#parseEntry(String)} on captured concordance lines.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntryBenchmark {
+
+    private String[] lines;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        lines = Fixtures.lines();
+    }
+
+    /**
+     * Parses the next captured line.
+     */
+    @Benchmark
+    public Entry parseEntry() {
+        if (++index == lines.length) {
+            index = 0;
+        }
+        return Entry.parseEntry(lines[index]);
+    }
+}
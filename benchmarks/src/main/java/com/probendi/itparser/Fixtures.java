@@ -0,0 +1,73 @@
+package com.probendi.itparser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Builds the inputs of the benchmarks from the concordance lines captured in {@code concordances.txt}.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+final class Fixtures {
+
+    private static final String CONCORDANCES = "/concordances.txt";
+
+    private Fixtures() {
+    }
+
+    /**
+     * Returns the captured {@code <p title=...>} lines.
+     *
+     * @return the captured lines
+     */
+    static String[] lines() {
+        try (InputStream in = Fixtures.class.getResourceAsStream(CONCORDANCES);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return reader.lines().filter(line -> !line.isBlank()).toArray(String[]::new);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns {@code size} entries, ordered by case number, which cycle through the captured lines.
+     * Every two consecutive entries share the same place number, as it often happens in real results.
+     *
+     * @param size the number of entries
+     * @return the entries
+     */
+    static Set<Entry> entries(int size) {
+        String[] lines = lines();
+        Entry[] templates = new Entry[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            templates[i] = Entry.parseEntry(lines[i]);
+        }
+        Set<Entry> entries = new TreeSet<>();
+        for (int i = 1; i <= size; i++) {
+            Entry t = templates[i % templates.length];
+            entries.add(new Entry(i, (i + 1) / 2, t.work(), t.position(), t.text() + " " + i));
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the consolidated entries of {@code size} entries.
+     *
+     * @param size the number of entries
+     * @return the consolidated entries
+     */
+    static List<ConsolidatedEntry> consolidatedEntries(int size) {
+        return new ArrayList<>(Crawler.consolidate(entries(size), EntryOrder.CASE));
+    }
+}
@@ -0,0 +1,65 @@
+package com.probendi.itparser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.http.HttpRequest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the building of the bodies of the 'works' and 'concordances' requests, either formatted anew for every
+ * line, as they used to be, or from precomputed {@link RequestTemplates}.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBenchmark {
+
+    private static final int PAGE_SIZE = 10_000;
+    private static final String TERM = "id quod est";
+    private static final String CONCORDANCES = Crawler.DEFAULT_CONCORDANCE_OPTIONS + "&results.pageSize=" +
+            PAGE_SIZE + "&Form.option.concordances=concordances";
+
+    private final RequestTemplates templates = new RequestTemplates(Crawler.FIRST_AUTHENTIC_WORK,
+            Crawler.LAST_AUTHENTIC_WORK, Crawler.DEFAULT_CONCORDANCE_OPTIONS, PAGE_SIZE);
+
+    @Benchmark
+    public HttpRequest.BodyPublisher formatWorks() {
+        StringBuilder body = new StringBuilder(String.format("text=%s&Form.option.options=options", TERM));
+        String format = "&listedWorks%%5B%d%%5D.selected=on";
+        for (int i = Crawler.FIRST_AUTHENTIC_WORK; i <= Crawler.LAST_AUTHENTIC_WORK; i++) {
+            body.append(String.format(format, i));
+        }
+        return HttpRequest.BodyPublishers.ofString(body.toString());
+    }
+
+    @Benchmark
+    public HttpRequest.BodyPublisher templateWorks() {
+        return templates.works(TERM);
+    }
+
+    @Benchmark
+    public HttpRequest.BodyPublisher formatConcordances() {
+        return HttpRequest.BodyPublishers.ofString("text=" + TERM + CONCORDANCES);
+    }
+
+    @Benchmark
+    public HttpRequest.BodyPublisher templateConcordances() {
+        return templates.concordances(TERM, 1);
+    }
+}
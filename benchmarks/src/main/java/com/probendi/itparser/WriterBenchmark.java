@@ -0,0 +1,119 @@
+package com.probendi.itparser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures {@link CsvWriter#write} and {@link JsonWriter#write} in each {@link OutputMode}, against a baseline
+ * which writes the rows formatted by {@link ConsolidatedEntry#toCsv()} and {@link ConsolidatedEntry#toJson()}
+ * through a {@link BufferedWriter} of the default size, as the writers did up to version 3.0. The compressed
+ * output is measured against writing the file in {@link OutputMode#CHANNEL} mode and compressing it afterwards.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WriterBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"BASELINE", "CHANNEL", "MAPPED", "GZIP", "CHANNEL_THEN_GZIP"})
+    public String mode;
+
+    private List<ConsolidatedEntry> entries;
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // consolidating 2 * size entries yields size consolidated entries
+        entries = Fixtures.consolidatedEntries(2 * size);
+        directory = Files.createTempDirectory("it-parser-benchmarks");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void csv() throws IOException {
+        Path file = directory.resolve("entries.csv");
+        if (mode.equals("BASELINE")) {
+            try (BufferedWriter bw = new BufferedWriter(new FileWriter(file.toFile()))) {
+                bw.write("Work\tPosition\tText\n");
+                for (ConsolidatedEntry entry : entries) {
+                    bw.write(entry.toCsv());
+                }
+            }
+        } else if (mode.equals("CHANNEL_THEN_GZIP")) {
+            new CsvWriter(OutputMode.CHANNEL).write(file.toString(), entries);
+            gzip(file);
+        } else {
+            new CsvWriter(OutputMode.valueOf(mode)).write(file.toString(), entries);
+        }
+    }
+
+    @Benchmark
+    public void json() throws IOException {
+        Path file = directory.resolve("entries.json");
+        if (mode.equals("BASELINE")) {
+            try (BufferedWriter bw = new BufferedWriter(new FileWriter(file.toFile()))) {
+                bw.write("{\"entries\":[\n");
+                for (int i = 0; i < entries.size(); i++) {
+                    if (i > 0) {
+                        bw.write(",\n");
+                    }
+                    bw.write(entries.get(i).toJson());
+                }
+                bw.write("\n]}");
+            }
+        } else if (mode.equals("CHANNEL_THEN_GZIP")) {
+            new JsonWriter(OutputMode.CHANNEL).write(file.toString(), entries);
+            gzip(file);
+        } else {
+            new JsonWriter(OutputMode.valueOf(mode)).write(file.toString(), entries);
+        }
+    }
+
+    private static void gzip(Path file) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file.resolveSibling(file + ".gz")),
+                1 << 16)) {
+            Files.copy(file, out);
+        }
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,176 @@
+package com.probendi.itparser;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the requests in flight to the {@code Index Thomisticus}, and the rate at which they are sent.
+ * <p>
+ * If adaptive, the limit is driven by additive-increase/multiplicative-decrease on the latency of the responses:
+ * <ul>
+ *     <li>the baseline latency is the lowest one observed, which slowly drifts up so that a lasting change of the
+ *     server's latency is eventually accepted;</li>
+ *     <li>as long as a response arrives within twice the baseline and the limit is actually used, the limit grows,
+ *     by one per response until the first decrease, i.e., it doubles every round trip, then by one per round
+ *     trip;</li>
+ *     <li>a slower response decreases the limit by a tenth, and a failure which signals an overloaded server,
+ *     i.e., an I/O error, throttling (429) or a server error (5xx), halves it;</li>
+ *     <li>the responses to requests sent before the last decrease do not decrease the limit again, since they do
+ *     not reflect it.</li>
+ * </ul>
+ * Otherwise, the number of requests in flight is bounded by the maximum limit only.
+ * <p>
+ * Whatever the limit, the requests are spaced so as not to exceed the maximum number of requests per second.
+ * <p>
+ * A limiter is thread-safe. It relies on a {@link ReentrantLock} rather than on monitors, lest the waiting
+ * virtual threads pin their carriers.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+final class AdaptiveLimiter {
+
+    /**
+     * The status code of a request which was abandoned, e.g., because the thread was interrupted.
+     */
+    static final int ABANDONED = 0;
+
+    private static final double TOLERANCE = 2.0;
+    private static final double SLOWDOWN_DECREASE = 0.9;
+    private static final double FAILURE_DECREASE = 0.5;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final int maxLimit;
+    private final boolean adaptive;
+    private final long intervalNanos;
+
+    private double limit;
+    private int inFlight;
+    private boolean slowStart = true;
+    private long baselineNanos = Long.MAX_VALUE;
+    private long lastDecrease;
+    private long nextSlot = System.nanoTime();
+
+    /**
+     * Creates a new limiter.
+     *
+     * @param maxLimit             the maximum number of requests in flight
+     * @param adaptive             {@code true} to adapt the limit, starting from 1, to the latency of the responses
+     * @param maxRequestsPerSecond the maximum rate of the requests, or {@code 0} for no limit
+     * @throws IllegalArgumentException if maxLimit is not strictly positive, or if maxRequestsPerSecond is negative
+     */
+    AdaptiveLimiter(int maxLimit, boolean adaptive, double maxRequestsPerSecond) {
+        if (maxLimit <= 0) {
+            throw new IllegalArgumentException("maxLimit must be strictly positive");
+        }
+        if (maxRequestsPerSecond < 0 || Double.isNaN(maxRequestsPerSecond)) {
+            throw new IllegalArgumentException("maxRequestsPerSecond cannot be negative");
+        }
+        this.maxLimit = maxLimit;
+        this.adaptive = adaptive;
+        this.limit = adaptive ? 1 : maxLimit;
+        this.intervalNanos = maxRequestsPerSecond == 0 ? 0
+                : (long) (TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond);
+    }
+
+    /**
+     * Waits until a request can be sent.
+     *
+     * @return the time at which the request is sent, to be passed to {@link #release(long, int)}
+     * @throws InterruptedException if the thread is interrupted
+     */
+    long acquire() throws InterruptedException {
+        long slot;
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                available.await();
+            }
+            inFlight++;
+            slot = Math.max(nextSlot, System.nanoTime());
+            nextSlot = slot + intervalNanos;
+        } finally {
+            lock.unlock();
+        }
+
+        long delay = slot - System.nanoTime();
+        if (delay > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                release(slot, ABANDONED);
+                throw e;
+            }
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the outcome of a request, and lets another request be sent.
+     *
+     * @param start      the time returned by {@link #acquire()}
+     * @param statusCode the response's status code, {@link CrawlException#NO_STATUS} if the request failed with an
+     *                   I/O error, or {@link #ABANDONED}
+     */
+    void release(long start, int statusCode) {
+        long latency = System.nanoTime() - start;
+        lock.lock();
+        try {
+            int used = inFlight--;
+            if (adaptive) {
+                adapt(start, latency, statusCode, used);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current limit.
+     *
+     * @return the maximum number of requests in flight
+     */
+    int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adapt(long start, long latency, int statusCode, int used) {
+        if (statusCode == CrawlException.NO_STATUS || statusCode == 429 || statusCode >= 500) {
+            decrease(start, FAILURE_DECREASE);
+            return;
+        }
+        if (statusCode != 200) {
+            // an expired session or a missing page says nothing about the server's load
+            return;
+        }
+
+        // the baseline rises by about 0.4% per response, unless a faster response resets it
+        latency = Math.max(1, latency);
+        baselineNanos = baselineNanos == Long.MAX_VALUE
+                ? latency : Math.min(latency, baselineNanos + (baselineNanos >> 8) + 1);
+        if (latency > baselineNanos * TOLERANCE) {
+            decrease(start, SLOWDOWN_DECREASE);
+        } else if (used * 2 >= (int) limit) {
+            limit = Math.min(maxLimit, limit + (slowStart ? 1 : 1 / limit));
+        }
+    }
+
+    private void decrease(long start, double factor) {
+        if (!slowStart && start - lastDecrease < 0) {
+            return;
+        }
+        slowStart = false;
+        limit = Math.max(1, limit * factor);
+        lastDecrease = System.nanoTime();
+    }
+}
@@ -0,0 +1,319 @@
+package com.probendi.itparser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes characters to a file in UTF-8 through a {@link FileChannel}.
+ * <p>
+ * The characters are encoded into a large direct buffer, which is written to the channel whenever it is full, or,
+ * in {@link OutputMode#MAPPED} mode, straight into regions of the file mapped in memory, which is truncated to its
+ * actual size on closing.
+ * <p>
+ * In {@link OutputMode#GZIP} mode, every full buffer is compressed as an independent gzip member on the common
+ * {@link ForkJoinPool}, while the next buffer is being filled, and the members are written in order as soon as
+ * they are ready. A concatenation of gzip members is itself a valid gzip file, which {@code gunzip} and
+ * {@link java.util.zip.GZIPInputStream} read as a whole.
+ * <p>
+ * Whatever the mode, the characters are written to a temporary file in the target's directory,
+ * which is atomically renamed to the target once the output is closed: readers never see a half-written file.
+ * <p>
+ * An output is not thread-safe.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+final class ChannelOutput implements Appendable, Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int REGION_SIZE = 1 << 26;
+    private static final int MAX_MEMBERS_IN_FLIGHT = 2 * ForkJoinPool.getCommonPoolParallelism() + 1;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final Path target;
+    private final Path tmp;
+    private final FileChannel channel;
+    private final boolean mapped;
+    // the members being compressed, in order, or null if the output is not compressed
+    private final Deque<CompletableFuture<ByteBuffer>> members;
+    private final int size;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars;
+    private ByteBuffer bytes;
+    // the offset of the mapped region within the file
+    private long region;
+    private boolean closed;
+
+    /**
+     * Creates a new output to the given file.
+     *
+     * @param target the file
+     * @param mode   the output mode
+     * @throws IOException if the temporary file cannot be created
+     */
+    ChannelOutput(Path target, OutputMode mode) throws IOException {
+        this(target, mode, mode == OutputMode.MAPPED ? REGION_SIZE : BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new output to the given file.
+     *
+     * @param target the file
+     * @param mode   the output mode
+     * @param size   the size of the buffer, or of the mapped regions, in bytes
+     * @throws IOException if the temporary file cannot be created
+     */
+    ChannelOutput(Path target, OutputMode mode, int size) throws IOException {
+        this.size = size;
+        this.chars = CharBuffer.allocate(Math.min(size, BUFFER_SIZE) / 4);
+        this.target = target.toAbsolutePath();
+        this.tmp = createTempFile(this.target, ".tmp");
+        this.mapped = mode == OutputMode.MAPPED;
+        this.members = mode == OutputMode.GZIP ? new ArrayDeque<>() : null;
+        try {
+            channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (mapped) {
+                bytes = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } else {
+                // the compressor reads a heap buffer without copying it
+                bytes = members != null ? ByteBuffer.allocate(size) : ByteBuffer.allocateDirect(size);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a new, empty temporary file next to the given target. Unlike {@link Files#createTempFile}, which
+     * restricts the file to its owner, the file gets the default permissions, i.e., those left by the umask, which it
+     * keeps once it has replaced the target.
+     *
+     * @param target the target
+     * @param suffix the suffix of the temporary file's name
+     * @return the temporary file
+     * @throws IOException if the file cannot be created
+     */
+    static Path createTempFile(Path target, String suffix) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        while (true) {
+            Path tmp = absolute.resolveSibling("." + absolute.getFileName() + "." +
+                    Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + suffix);
+            try {
+                Files.newByteChannel(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+                return tmp;
+            } catch (FileAlreadyExistsException e) {
+                // another output picked the same name
+            }
+        }
+    }
+
+    @Override
+    public ChannelOutput append(CharSequence csq) throws IOException {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public ChannelOutput append(CharSequence csq, int start, int end) throws IOException {
+        while (start < end) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int n = Math.min(chars.remaining(), end - start);
+            int offset = chars.arrayOffset() + chars.position();
+            if (csq instanceof String s) {
+                s.getChars(start, start + n, chars.array(), offset);
+            } else if (csq instanceof StringBuilder sb) {
+                sb.getChars(start, start + n, chars.array(), offset);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    chars.array()[offset + i] = csq.charAt(start + i);
+                }
+            }
+            chars.position(chars.position() + n);
+            start += n;
+        }
+        return this;
+    }
+
+    @Override
+    public ChannelOutput append(char c) throws IOException {
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put(c);
+        return this;
+    }
+
+    /**
+     * Writes the pending characters, and replaces the target file with the temporary file. Should that fail, the
+     * temporary file is deleted.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            encode(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            if (mapped) {
+                channel.truncate(region + bytes.position());
+                bytes = null;
+            } else if (members != null) {
+                // an empty file is a single empty member
+                if (bytes.position() > 0 || channel.position() == 0 && members.isEmpty()) {
+                    drain();
+                }
+                while (!members.isEmpty()) {
+                    write(members.poll());
+                }
+            } else {
+                drain();
+            }
+            closed = true;
+            channel.close();
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Discards the output, leaving the target file untouched.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void abort() throws IOException {
+        closed = true;
+        bytes = null;
+        if (members != null) {
+            members.forEach(member -> member.cancel(false));
+            members.clear();
+        }
+        try {
+            channel.close();
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Encodes the pending characters, except for a trailing high surrogate unless this is the end of the input.
+     */
+    private void encode(boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isUnderflow()) {
+                break;
+            }
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                result.throwException();
+            }
+        }
+        chars.compact();
+    }
+
+    /**
+     * Writes the encoded bytes to the channel, maps the next region of the file, or hands the encoded bytes over to
+     * a compressor.
+     */
+    private void drain() throws IOException {
+        if (mapped) {
+            region += bytes.position();
+            bytes = channel.map(FileChannel.MapMode.READ_WRITE, region, size);
+        } else if (members != null) {
+            ByteBuffer block = bytes.flip();
+            members.add(CompletableFuture.supplyAsync(() -> compress(block), ForkJoinPool.commonPool()));
+            bytes = ByteBuffer.allocate(size);
+            while (members.size() > MAX_MEMBERS_IN_FLIGHT) {
+                write(members.poll());
+            }
+        } else {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+    }
+
+    /**
+     * Waits for the given member to be compressed, and writes it to the channel.
+     */
+    private void write(CompletableFuture<ByteBuffer> member) throws IOException {
+        ByteBuffer compressed;
+        try {
+            compressed = member.join();
+        } catch (CompletionException e) {
+            throw new IOException("failed to compress " + target, e.getCause());
+        }
+        while (compressed.hasRemaining()) {
+            channel.write(compressed);
+        }
+    }
+
+    /**
+     * Compresses the given bytes as a gzip member, i.e., a header, the raw deflated bytes, and a trailer holding
+     * the CRC-32 and the length of the uncompressed bytes.
+     */
+    private static ByteBuffer compress(ByteBuffer block) {
+        CRC32 crc = new CRC32();
+        crc.update(block.array(), 0, block.limit());
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(block.array(), 0, block.limit());
+            deflater.finish();
+            // incompressible input grows by a few bytes per 16 KB block
+            byte[] out = new byte[GZIP_HEADER.length + block.limit() + (block.limit() >> 12) + 64];
+            System.arraycopy(GZIP_HEADER, 0, out, 0, GZIP_HEADER.length);
+            int n = GZIP_HEADER.length;
+            while (!deflater.finished()) {
+                if (n == out.length - 8) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                n += deflater.deflate(out, n, out.length - 8 - n);
+            }
+            return ByteBuffer.wrap(out, 0, n + 8)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(n, (int) crc.getValue())
+                    .putInt(n + 4, block.limit());
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.probendi.itparser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a columnar file written by {@link ColumnarWriter}.
+ * <p>
+ * Every column is mapped in memory on its own when it is read, hence scanning a column neither reads nor decodes
+ * the others. The entries are ordered by place number.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public class ColumnarReader implements Closeable {
+
+    private final FileChannel channel;
+    private final int rows;
+    private final Map<String, long[]> directory = new HashMap<>();
+    private List<String> works;
+
+    /**
+     * Opens the given columnar file.
+     *
+     * @param file the file
+     * @throws IllegalArgumentException if file is {@code null}
+     * @throws IOException              if an I/O error occurs or if the file is not a columnar file
+     */
+    public ColumnarReader(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file cannot be null");
+        }
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 1 << 12));
+            if (header.remaining() < 16 || header.getInt() != ColumnarWriter.MAGIC) {
+                throw new IOException("not a columnar file: " + file);
+            }
+            int version = header.getInt();
+            if (version != ColumnarWriter.VERSION) {
+                throw new IOException("unsupported version " + version + ": " + file);
+            }
+            rows = header.getInt();
+            int columns = header.getInt();
+            for (int i = 0; i < columns; i++) {
+                byte[] name = new byte[header.getInt()];
+                header.get(name);
+                long offset = header.getLong();
+                long length = header.getLong();
+                if (offset < 0 || length < 0 || offset + length > channel.size()) {
+                    throw new IOException("malformed columnar file: " + file);
+                }
+                directory.put(new String(name, StandardCharsets.UTF_8), new long[]{offset, length});
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException ioe ? ioe : new IOException("malformed columnar file: " + file, e);
+        }
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the place numbers, in ascending order.
+     *
+     * @return a read-only view of the place numbers
+     * @throws IOException if an I/O error occurs
+     */
+    public IntBuffer places() throws IOException {
+        return column("place").asIntBuffer();
+    }
+
+    /**
+     * Returns the dictionary of the works.
+     *
+     * @return the works, in the order of their indexes
+     * @throws IOException if an I/O error occurs
+     */
+    public List<String> works() throws IOException {
+        if (works == null) {
+            ByteBuffer column = column("work");
+            int n = column.getInt();
+            List<String> list = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                list.add(readString(column));
+            }
+            works = Collections.unmodifiableList(list);
+        }
+        return works;
+    }
+
+    /**
+     * Returns the index of each entry's work within {@link #works()}.
+     *
+     * @return a read-only view of the indexes
+     * @throws IOException if an I/O error occurs
+     */
+    public IntBuffer workIndexes() throws IOException {
+        ByteBuffer column = column("work");
+        int n = column.getInt();
+        for (int i = 0; i < n; i++) {
+            column.position(column.position() + 4 + column.getInt(column.position()));
+        }
+        return column.slice().asIntBuffer();
+    }
+
+    /**
+     * Returns an iterator over the positions, which are decoded one at a time.
+     *
+     * @return an iterator over the positions
+     * @throws IOException if an I/O error occurs
+     */
+    public Iterator<String> positions() throws IOException {
+        return strings(column("position"));
+    }
+
+    /**
+     * Returns an iterator over the texts, which are decoded one at a time.
+     *
+     * @return an iterator over the texts
+     * @throws IOException if an I/O error occurs
+     */
+    public Iterator<String> texts() throws IOException {
+        return strings(column("text"));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Maps the given column.
+     */
+    private ByteBuffer column(String name) throws IOException {
+        long[] entry = directory.get(name);
+        if (entry == null) {
+            throw new IOException("missing column: " + name);
+        }
+        if (entry[1] > ColumnarWriter.MAX_COLUMN_LENGTH) {
+            throw new IOException("column too large to be mapped: " + name);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, entry[0], entry[1]);
+    }
+
+    private Iterator<String> strings(ByteBuffer column) {
+        return new Iterator<>() {
+            private int row;
+
+            @Override
+            public boolean hasNext() {
+                return row < rows;
+            }
+
+            @Override
+            public String next() {
+                if (row++ >= rows) {
+                    throw new NoSuchElementException();
+                }
+                return readString(column);
+            }
+        };
+    }
+
+    private static String readString(ByteBuffer column) {
+        int n = column.getInt();
+        String s = StandardCharsets.UTF_8.decode(column.slice(column.position(), n)).toString();
+        column.position(column.position() + n);
+        return s;
+    }
+}
@@ -0,0 +1,280 @@
+package com.probendi.itparser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes entries to a columnar binary file, which {@link ColumnarReader} reads.
+ * <p>
+ * The file holds the entries ordered by place number, one column after another:
+ * <ul>
+ *     <li>{@code place}: the place numbers, as {@code int}s;</li>
+ *     <li>{@code work}: the dictionary of the works, i.e., their number followed by each work, then the index of
+ *     each entry's work within the dictionary, as {@code int}s;</li>
+ *     <li>{@code position}: the positions;</li>
+ *     <li>{@code text}: the texts, separated by spaces, as in the CSV and JSON files.</li>
+ * </ul>
+ * Strings are written as UTF-8 bytes prefixed by their length, and numbers in big-endian order. The header holds a
+ * magic number, the version of the format, the number of entries, and the directory of the columns, i.e., the
+ * name, offset and length of each column, so that a column can be read without decoding the others. Since
+ * {@link ColumnarReader} maps every column in memory as a whole, a column cannot exceed
+ * {@link #MAX_COLUMN_LENGTH} bytes: the entries are rejected beyond that.
+ * <p>
+ * Since the entries are sorted on closing, their positions and texts are spilled to temporary files meanwhile,
+ * which are then mapped in memory to be copied in the order of the places. The file is written to a temporary file
+ * as well, which is atomically renamed once it is complete.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public class ColumnarWriter implements Writer {
+
+    static final int MAGIC = 0x49544346; // ITCF
+    static final int VERSION = 1;
+    static final List<String> COLUMNS = List.of("place", "work", "position", "text");
+
+    /**
+     * The maximum length of a column, in bytes, i.e., the largest region of a file which can be mapped at once.
+     */
+    static final long MAX_COLUMN_LENGTH = Integer.MAX_VALUE;
+
+    @Override
+    public EntrySink open(String file) throws IOException {
+        final String name = validate(file);
+        return new ColumnarSink(Path.of(name));
+    }
+
+    /**
+     * Collects the columns of the entries, and writes them on closing.
+     */
+    private static final class ColumnarSink implements EntrySink {
+
+        private final Path target;
+        private final Path tmp;
+        private final Spill positions;
+        private final Spill texts;
+        private final Map<String, Integer> works = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        private int[] places = new int[1024];
+        private int[] workIndexes = new int[1024];
+        private int count;
+
+        ColumnarSink(Path target) throws IOException {
+            this.target = target.toAbsolutePath();
+            Path dir = this.target.getParent();
+            String prefix = "." + target.getFileName() + ".";
+            // unlike the spills, the file keeps the permissions of its temporary file
+            tmp = ChannelOutput.createTempFile(this.target, ".tmp");
+            Spill p = null;
+            try {
+                p = new Spill("position", Files.createTempFile(dir, prefix, ".position"));
+                positions = p;
+                texts = new Spill("text", Files.createTempFile(dir, prefix, ".text"));
+            } catch (IOException | RuntimeException e) {
+                if (p != null) {
+                    p.delete();
+                }
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
+        }
+
+        @Override
+        public void accept(ConsolidatedEntry entry) throws IOException {
+            if (count == places.length) {
+                places = Arrays.copyOf(places, count * 2);
+                workIndexes = Arrays.copyOf(workIndexes, count * 2);
+            }
+            places[count] = entry.placeNumber();
+            workIndexes[count] = works.computeIfAbsent(entry.work(), w -> {
+                dictionary.add(w);
+                return dictionary.size() - 1;
+            });
+            positions.add(entry.position(), count);
+            text.setLength(0);
+            entry.appendText(text);
+            texts.add(text, count);
+            count++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                positions.finish();
+                texts.finish();
+                write();
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(tmp);
+                throw e;
+            } finally {
+                positions.delete();
+                texts.delete();
+            }
+            System.out.printf("Written %d entries to %s\n", count, target);
+        }
+
+        @Override
+        public void abort() throws IOException {
+            try {
+                positions.delete();
+                texts.delete();
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+
+        /**
+         * Writes the header and the columns, the entries being sorted by place number.
+         */
+        private void write() throws IOException {
+            // the spilled columns are checked as they grow
+            if (4L * count + 4 > MAX_COLUMN_LENGTH) {
+                throw new IOException("too many entries for a columnar file: " + count);
+            }
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = (long) places[i] << 32 | i;
+            }
+            Arrays.sort(keys);
+
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                int headerSize = 4 * 4 + COLUMNS.stream().mapToInt(c -> 4 + c.length() + 8 + 8).sum();
+                long[] offsets = new long[COLUMNS.size() + 1];
+                offsets[0] = headerSize;
+                channel.position(headerSize);
+                // the stream is not closed, lest it close the channel
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        Channels.newOutputStream(channel), 1 << 16));
+
+                for (long key : keys) {
+                    out.writeInt(places[(int) key]);
+                }
+                out.flush();
+                offsets[1] = channel.position();
+
+                out.writeInt(dictionary.size());
+                for (String work : dictionary) {
+                    writeString(out, work.getBytes(StandardCharsets.UTF_8));
+                }
+                for (long key : keys) {
+                    out.writeInt(workIndexes[(int) key]);
+                }
+                out.flush();
+                offsets[2] = channel.position();
+
+                positions.copy(keys, out);
+                out.flush();
+                offsets[3] = channel.position();
+                texts.copy(keys, out);
+                out.flush();
+                offsets[4] = channel.position();
+
+                ByteBuffer header = ByteBuffer.allocate(headerSize);
+                header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(COLUMNS.size());
+                for (int i = 0; i < COLUMNS.size(); i++) {
+                    byte[] b = COLUMNS.get(i).getBytes(StandardCharsets.UTF_8);
+                    header.putInt(b.length).put(b).putLong(offsets[i]).putLong(offsets[i + 1] - offsets[i]);
+                }
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            }
+        }
+
+        private static void writeString(DataOutputStream out, byte[] b) throws IOException {
+            out.writeInt(b.length);
+            out.write(b);
+        }
+    }
+
+    /**
+     * A column of strings spilled to a temporary file in the order of the entries, as length-prefixed UTF-8, along
+     * with the offset of each entry's string. Once complete, the file is mapped in memory, so that the strings are
+     * copied in another order without a read per string.
+     */
+    private static final class Spill {
+
+        private final String column;
+        private final Path file;
+        private final DataOutputStream out;
+        private int[] offsets = new int[1024];
+        private long size;
+        private MappedByteBuffer mapped;
+
+        Spill(String column, Path file) throws IOException {
+            this.column = column;
+            this.file = file;
+            OutputStream os = Files.newOutputStream(file);
+            this.out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16));
+        }
+
+        void add(CharSequence s, int row) throws IOException {
+            if (row == offsets.length) {
+                offsets = Arrays.copyOf(offsets, row * 2);
+            }
+            byte[] b = s.toString().getBytes(StandardCharsets.UTF_8);
+            if (size + 4 + b.length > MAX_COLUMN_LENGTH) {
+                throw new IOException("the '" + column + "' column exceeds " + MAX_COLUMN_LENGTH + " bytes");
+            }
+            offsets[row] = (int) size;
+            out.writeInt(b.length);
+            out.write(b);
+            size += 4 + b.length;
+        }
+
+        void finish() throws IOException {
+            out.close();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                // the mapping outlives the channel
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+
+        /**
+         * Copies the strings of the entries whose indexes are the low 32 bits of the given keys, in their order.
+         */
+        void copy(long[] keys, DataOutputStream target) throws IOException {
+            byte[] bytes = new byte[1 << 12];
+            for (long key : keys) {
+                int offset = offsets[(int) key];
+                int n = mapped.getInt(offset);
+                if (n > bytes.length) {
+                    bytes = new byte[Math.max(n, bytes.length * 2)];
+                }
+                mapped.get(offset + 4, bytes, 0, n);
+                target.writeInt(n);
+                target.write(bytes, 0, n);
+            }
+        }
+
+        void delete() throws IOException {
+            try {
+                out.close();
+                mapped = null;
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.probendi.itparser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Parses a concordances page of the <a href="https://www.corpusthomisticum.org/it/index.age">Index Thomisticus</a>
+ * one line at a time, so that the page never needs to be held in memory as a whole.
+ * <p>
+ * If the parser is given a pool, the {@code <p title=...>} lines are gathered into chunks of {@link #CHUNK_SIZE}
+ * lines, each of which is parsed by a task of the pool while the following lines are still being read, so that a
+ * large page is parsed on all cores. The entries of the chunks are merged by case number once the page has been read,
+ * i.e., when {@link #entries()} is called.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+class ConcordancesParser implements Consumer<String> {
+
+    private static final String CASES_IN = " cases in ";
+    private static final String FOUND = "Found";
+    private static final String P_TITLE = "<p title=";
+
+    /**
+     * The number of lines parsed by a task of the pool.
+     */
+    static final int CHUNK_SIZE = 256;
+
+    private final Set<Entry> entries = new TreeSet<>();
+    private final ForkJoinPool pool;
+    private final Deque<ForkJoinTask<List<Entry>>> chunks = new ArrayDeque<>();
+    private List<String> lines;
+    private int[] offsets;
+    private String found;
+    private int cases = -1;
+    private int duplicates;
+    private long parseNanos;
+
+    /**
+     * Creates a new parser, which parses the lines as they are accepted.
+     */
+    ConcordancesParser() {
+        this(null);
+    }
+
+    /**
+     * Creates a new parser, which parses the lines in chunks within the given pool.
+     *
+     * @param pool the pool, or {@code null} if the lines are to be parsed as they are accepted
+     */
+    ConcordancesParser(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Parses the given line of the page: {@code <p title=...>} lines are turned into entries, while the
+     * {@code Found N cases in ...} line is kept as the page's header.
+     *
+     * @param line a line of the page, without its line terminator
+     */
+    @Override
+    public void accept(String line) {
+        int n = line.indexOf(P_TITLE);
+        if (n != -1) {
+            if (pool == null) {
+                long start = System.nanoTime();
+                add(Entry.parseEntry(line, n));
+                parseNanos += System.nanoTime() - start;
+                return;
+            }
+            if (lines == null) {
+                lines = new ArrayList<>(CHUNK_SIZE);
+                offsets = new int[CHUNK_SIZE];
+            }
+            offsets[lines.size()] = n;
+            lines.add(line);
+            if (lines.size() == CHUNK_SIZE) {
+                List<String> chunk = lines;
+                int[] chunkOffsets = offsets;
+                chunks.add(pool.submit(() -> parse(chunk, chunkOffsets)));
+                lines = null;
+            }
+        } else if (found == null) {
+            int m = line.indexOf(FOUND);
+            if (m != -1) {
+                int k = line.indexOf(CASES_IN, m);
+                if (k != -1) {
+                    found = line.substring(m, k);
+                    cases = parseCases(line, m + FOUND.length(), k);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the entries parsed so far, ordered by case number, waiting for the chunks being parsed.
+     *
+     * @return the entries parsed so far
+     */
+    Set<Entry> entries() {
+        // the last chunk is parsed by the caller, alongside the tasks of the pool
+        List<Entry> last = lines != null ? parse(lines, offsets) : List.of();
+        lines = null;
+        for (ForkJoinTask<List<Entry>> chunk; (chunk = chunks.poll()) != null; ) {
+            chunk.join().forEach(this::add);
+        }
+        last.forEach(this::add);
+        return entries;
+    }
+
+    /**
+     * Returns the number of entries parsed so far whose case number had already been parsed, e.g., because a page
+     * was returned twice.
+     *
+     * @return the number of duplicate entries
+     */
+    int duplicates() {
+        entries();
+        return duplicates;
+    }
+
+    /**
+     * Returns the time spent parsing the entries, summed over the tasks of the pool, which may exceed the time
+     * elapsed.
+     *
+     * @return the time in nanoseconds
+     */
+    long parseNanos() {
+        entries();
+        return parseNanos;
+    }
+
+    /**
+     * Returns the page's header, e.g., {@code Found 1234}.
+     *
+     * @return the page's header, or {@code null} if it has not been parsed yet
+     */
+    String found() {
+        return found;
+    }
+
+    /**
+     * Returns the total number of cases announced by the page's header, which may exceed the number of entries
+     * in the page if the results span several pages.
+     *
+     * @return the total number of cases, or {@code -1} if the header has not been parsed yet
+     */
+    int cases() {
+        return cases;
+    }
+
+    private void add(Entry entry) {
+        if (!entries.add(entry)) {
+            duplicates++;
+        }
+    }
+
+    /**
+     * Parses the given chunk of lines.
+     */
+    private List<Entry> parse(List<String> chunk, int[] chunkOffsets) {
+        long start = System.nanoTime();
+        List<Entry> parsed = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            parsed.add(Entry.parseEntry(chunk.get(i), chunkOffsets[i]));
+        }
+        addParseNanos(System.nanoTime() - start);
+        return parsed;
+    }
+
+    private synchronized void addParseNanos(long nanos) {
+        parseNanos += nanos;
+    }
+
+    /**
+     * Parses the number of cases, skipping thousands separators.
+     */
+    private static int parseCases(String line, int begin, int end) {
+        long value = 0;
+        for (int i = begin; i < end && value <= Integer.MAX_VALUE; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+            }
+        }
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+}
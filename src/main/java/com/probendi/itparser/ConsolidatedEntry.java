@@ -1,26 +1,39 @@
 package com.probendi.itparser;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
 
 /**
  * An entry to be written to a CVS and a JSON file.
+ * <p>
+ * The texts of the entries consolidated by a {@link Consolidator} are not held as strings, but as the IDs of the texts
+ * stored in a {@link TextArena}, which those entries share: a text found in several places is thus stored once. The
+ * texts of an entry created on its own are held in a set of strings.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
  *
- * @param placeNumber the place number
- * @param work        the work
- * @param position    the position within the work
- * @param text        the text
- *                    <p>
- *                    Copyright &copy; 2023-2024, Daniele Di Salvo
  * @author Daniele Di Salvo
  * @since 2.1
  */
-public record ConsolidatedEntry(int placeNumber, String work, String position, Set<String> text) {
+public final class ConsolidatedEntry {
 
-    private static final String CSV_FORMAT = "%s\t%s\t%s\n";
-    private static final String JSON_FORMAT = "{\"work\":\"%s\",\"position\":\"%s\",\"text\":\"%s\"}";
+    private final int placeNumber;
+    private final String work;
+    private final String position;
+
+    // the texts, either as IDs in the arena shared by a consolidator, or as strings
+    private final TextArena arena;
+    private int[] texts;
+    private int textCount;
+    private final Set<String> strings;
 
     /**
      * Creates a new entry with the given values.
@@ -29,8 +42,40 @@ public record ConsolidatedEntry(int placeNumber, String work, String position, S
      * @param work        the work
      * @param position    the position with
      * @param text        the text
+     * @throws IllegalArgumentException if placeNumber is not strictly positive, or if work, position or text is
+     *                                  {@code null}
+     */
+    public ConsolidatedEntry(int placeNumber, String work, String position, Set<String> text) {
+        this(placeNumber, work, position, (TextArena) null);
+        if (text == null) {
+            throw new IllegalArgumentException("text cannot be null");
+        }
+        strings.addAll(text);
+    }
+
+    /**
+     * Creates a new {@code ConsolidatedEntry} from the given {@link Entry}.
+     *
+     * @param entry an {@link Entry}
+     */
+    public ConsolidatedEntry(Entry entry) {
+        this(entry.placeNumber(), entry.work(), entry.position(), (TextArena) null);
+        strings.add(entry.text());
+    }
+
+    /**
+     * Creates a new {@code ConsolidatedEntry} from the given {@link Entry}, whose texts are stored in the given arena.
+     *
+     * @param entry an {@link Entry}
+     * @param work  the entry's work, possibly interned
+     * @param arena the arena of the texts
      */
-    public ConsolidatedEntry {
+    ConsolidatedEntry(Entry entry, String work, TextArena arena) {
+        this(entry.placeNumber(), work, entry.position(), arena);
+        addText(entry.text());
+    }
+
+    private ConsolidatedEntry(int placeNumber, String work, String position, TextArena arena) {
         if (placeNumber <= 0) {
             throw new IllegalArgumentException("placeNumber must be strictly positive");
         }
@@ -40,19 +85,80 @@ public record ConsolidatedEntry(int placeNumber, String work, String position, S
         if (position == null) {
             throw new IllegalArgumentException("position cannot be null");
         }
-        if (text == null) {
-            throw new IllegalArgumentException("text cannot be null");
+        this.placeNumber = placeNumber;
+        this.work = work;
+        this.position = position;
+        this.arena = arena;
+        if (arena != null) {
+            this.texts = new int[1];
+            this.strings = null;
+        } else {
+            this.strings = new LinkedHashSet<>();
         }
     }
 
     /**
-     * Creates a new {@code ConsolidatedEntry} from the given {@link Entry}.
+     * Returns the place number.
      *
-     * @param entry an {@link Entry}
+     * @return the place number
      */
-    public ConsolidatedEntry(Entry entry) {
-        this(entry.placeNumber(), entry.work(), entry.position(), new LinkedHashSet<>());
-        text.add(entry.text());
+    public int placeNumber() {
+        return placeNumber;
+    }
+
+    /**
+     * Returns the work.
+     *
+     * @return the work
+     */
+    public String work() {
+        return work;
+    }
+
+    /**
+     * Returns the position within the work.
+     *
+     * @return the position within the work
+     */
+    public String position() {
+        return position;
+    }
+
+    /**
+     * Returns an unmodifiable view of the texts, in the order in which they were added.
+     *
+     * @return the texts
+     */
+    public Set<String> text() {
+        if (arena == null) {
+            return Collections.unmodifiableSet(strings);
+        }
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<>() {
+                    private int i;
+
+                    @Override
+                    public boolean hasNext() {
+                        return i < textCount;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (i >= textCount) {
+                            throw new NoSuchElementException();
+                        }
+                        return arena.get(texts[i++]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return textCount;
+            }
+        };
     }
 
     @Override
@@ -74,8 +180,9 @@ public record ConsolidatedEntry(int placeNumber, String work, String position, S
     @Override
     public String toString() {
         String shortText = "";
-        if (!text.isEmpty()) {
-            String t = new LinkedList<>(text).get(0);
+        Iterator<String> text = text().iterator();
+        if (text.hasNext()) {
+            String t = text.next();
             shortText = t.length() > 32 ? t.substring(0, 32) : t;
         }
         return "Entry{" +
@@ -92,7 +199,64 @@ public record ConsolidatedEntry(int placeNumber, String work, String position, S
      * @param strings the strings to be added
      */
     public void addText(Set<String> strings) {
-        text.addAll(strings);
+        for (String s : strings) {
+            addText(s);
+        }
+    }
+
+    /**
+     * Adds the given string to the text collection, unless it is already there.
+     *
+     * @param s the string to be added
+     */
+    void addText(String s) {
+        if (arena == null) {
+            strings.add(s);
+            return;
+        }
+        int id = arena.add(s);
+        for (int i = 0; i < textCount; i++) {
+            if (texts[i] == id) {
+                return;
+            }
+        }
+        if (textCount == texts.length) {
+            texts = Arrays.copyOf(texts, textCount * 2);
+        }
+        texts[textCount++] = id;
+    }
+
+    /**
+     * Appends the texts, separated by spaces and trimmed, to the given {@link StringBuilder}.
+     *
+     * @param sb the {@link StringBuilder}
+     */
+    void appendText(StringBuilder sb) {
+        int start = sb.length();
+        if (arena == null) {
+            String separator = "";
+            for (String s : strings) {
+                sb.append(separator).append(s);
+                separator = " ";
+            }
+        } else {
+            for (int i = 0; i < textCount; i++) {
+                if (i > 0) {
+                    sb.append(' ');
+                }
+                arena.appendTo(texts[i], sb);
+            }
+        }
+        int end = sb.length();
+        while (end > start && sb.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        sb.setLength(end);
+        int from = start;
+        while (from < end && sb.charAt(from) <= ' ') {
+            from++;
+        }
+        sb.delete(start, from);
     }
 
     /**
@@ -101,7 +265,13 @@ public record ConsolidatedEntry(int placeNumber, String work, String position, S
      * @return this entry as a CSV string
      */
     public String toCsv() {
-        return doFormat(CSV_FORMAT);
+        StringBuilder sb = new StringBuilder();
+        try {
+            new EntryEncoder().appendCsv(this, sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
     }
 
     /**
@@ -110,18 +280,12 @@ public record ConsolidatedEntry(int placeNumber, String work, String position, S
      * @return this entry as a JSON string
      */
     public String toJson() {
-        return doFormat(JSON_FORMAT);
-    }
-
-    /**
-     * Returns this entry as a CSV or JSON string.
-     *
-     * @param format the formatting string
-     * @return this entry as a CSV or JSON string
-     */
-    private String doFormat(String format) {
         StringBuilder sb = new StringBuilder();
-        text.forEach(t -> sb.append(t).append(" "));
-        return String.format(format, work, position, sb.toString().trim());
+        try {
+            new EntryEncoder().appendJson(this, sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
     }
 }
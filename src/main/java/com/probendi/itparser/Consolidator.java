@@ -0,0 +1,179 @@
+package com.probendi.itparser;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Consolidates entries by place number: all the entries of a place, whichever line they were found for, are merged
+ * into a single {@link ConsolidatedEntry}, whose texts are deduplicated.
+ * <p>
+ * The consolidated entries share a single {@link TextArena}, which stores every distinct text once, and a
+ * dictionary of the works, so that the work of each entry refers to the same string.
+ * <p>
+ * Places are looked up in an open-addressing hash table of {@code int} keys, and the consolidated entries are
+ * sorted by means of primitive {@code long} keys, so that neither the place numbers nor the sort keys are boxed.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+final class Consolidator {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    // the hash table: place numbers, which are strictly positive, and 0 for empty slots
+    private int[] places = new int[INITIAL_CAPACITY];
+    // the hash table: the indexes of the places' entries
+    private int[] indexes = new int[INITIAL_CAPACITY];
+
+    // the consolidated entries and their lowest case numbers, in order of insertion
+    private ConsolidatedEntry[] entries = new ConsolidatedEntry[INITIAL_CAPACITY / 2];
+    private int[] cases = new int[INITIAL_CAPACITY / 2];
+    private int size;
+
+    private TextArena arena = new TextArena(1 << 16);
+    private Map<String, String> works = new HashMap<>();
+
+    /**
+     * Adds the given entries.
+     *
+     * @param entries the entries, ordered by case number
+     */
+    void addAll(Collection<Entry> entries) {
+        for (Entry entry : entries) {
+            add(entry);
+        }
+    }
+
+    /**
+     * Adds the given entry, merging it into the consolidated entry of its place, if any.
+     *
+     * @param entry the entry
+     */
+    void add(Entry entry) {
+        int place = entry.placeNumber();
+        int mask = places.length - 1;
+        int slot = hash(place) & mask;
+        while (places[slot] != 0) {
+            if (places[slot] == place) {
+                int index = indexes[slot];
+                entries[index].addText(entry.text());
+                cases[index] = Math.min(cases[index], entry.caseNumber());
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+            cases = Arrays.copyOf(cases, size * 2);
+        }
+        entries[size] = new ConsolidatedEntry(entry, works.computeIfAbsent(entry.work(), w -> w), arena);
+        cases[size] = entry.caseNumber();
+        places[slot] = place;
+        indexes[slot] = size++;
+        if (size * 2 > places.length) {
+            rehash();
+        }
+    }
+
+    /**
+     * Returns the number of consolidated entries.
+     *
+     * @return the number of consolidated entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Passes the consolidated entries to the given sink in the given order. The consolidator is empty afterward,
+     * and each entry is released as soon as it has been passed on.
+     *
+     * @param order the order
+     * @param sink  the sink
+     * @throws IOException if the sink fails
+     */
+    void drain(EntryOrder order, EntrySink sink) throws IOException {
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            // the index breaks ties, hence places found for earlier lines come first
+            keys[i] = (long) (order == EntryOrder.CASE ? cases[i] : entries[i].placeNumber()) << 32 | i;
+        }
+        Arrays.sort(keys);
+        if (order == EntryOrder.WORK) {
+            keys = groupByWork(keys);
+        }
+
+        ConsolidatedEntry[] sorted = entries;
+        clear();
+        for (long key : keys) {
+            int index = (int) key;
+            ConsolidatedEntry entry = sorted[index];
+            sorted[index] = null;
+            sink.accept(entry);
+        }
+    }
+
+    /**
+     * Stably distributes the given keys, sorted by place number, among the works, which are sorted alphabetically.
+     */
+    private long[] groupByWork(long[] keys) {
+        String[] works = Arrays.stream(entries, 0, size)
+                .map(ConsolidatedEntry::work)
+                .distinct()
+                .sorted()
+                .toArray(String[]::new);
+        int[] ranks = new int[size];
+        int[] offsets = new int[works.length + 1];
+        for (int i = 0; i < size; i++) {
+            ranks[i] = Arrays.binarySearch(works, entries[i].work());
+            offsets[ranks[i] + 1]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        long[] grouped = new long[size];
+        for (long key : keys) {
+            grouped[offsets[ranks[(int) key]]++] = key;
+        }
+        return grouped;
+    }
+
+    private void clear() {
+        places = new int[INITIAL_CAPACITY];
+        indexes = new int[INITIAL_CAPACITY];
+        entries = new ConsolidatedEntry[INITIAL_CAPACITY / 2];
+        cases = new int[INITIAL_CAPACITY / 2];
+        size = 0;
+        arena = new TextArena(1 << 16);
+        works = new HashMap<>();
+    }
+
+    private void rehash() {
+        int[] oldPlaces = places;
+        int[] oldIndexes = indexes;
+        places = new int[oldPlaces.length * 2];
+        indexes = new int[oldPlaces.length * 2];
+        int mask = places.length - 1;
+        for (int i = 0; i < oldPlaces.length; i++) {
+            if (oldPlaces[i] != 0) {
+                int slot = hash(oldPlaces[i]) & mask;
+                while (places[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                places[slot] = oldPlaces[i];
+                indexes[slot] = oldIndexes[i];
+            }
+        }
+    }
+
+    private static int hash(int place) {
+        int h = place * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
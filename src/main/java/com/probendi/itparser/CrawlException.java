@@ -0,0 +1,151 @@
+package com.probendi.itparser;
+
+import java.io.IOException;
+
+/**
+ * Signals that a request to the {@code Index Thomisticus} failed, either because the server answered with an
+ * unexpected status code or because of an I/O error, such as a refused connection or a timeout.
+ * <p>
+ * Failures which are likely to be transient, i.e., I/O errors, expired sessions, throttling and server errors, are
+ * retryable: the crawler searches the line again within a new session, after a backoff.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public class CrawlException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The requests run to search a line, in order.
+     */
+    public enum Phase {
+
+        /**
+         * The 'new search' request, which opens a session.
+         */
+        NEW_SEARCH("new search"),
+
+        /**
+         * The 'term' request.
+         */
+        TERM("term"),
+
+        /**
+         * The 'forms' request.
+         */
+        FORMS("forms"),
+
+        /**
+         * The 'works' request.
+         */
+        WORKS("works"),
+
+        /**
+         * The 'concordances' request, of any page.
+         */
+        CONCORDANCES("concordances");
+
+        private final String request;
+
+        Phase(String request) {
+            this.request = request;
+        }
+
+        @Override
+        public String toString() {
+            return request;
+        }
+    }
+
+    /**
+     * The status code of a failure which is not an HTTP response.
+     */
+    public static final int NO_STATUS = -1;
+
+    private final Phase phase;
+    private final int statusCode;
+    private final String line;
+
+    /**
+     * Creates a new exception for a response with an unexpected status code.
+     *
+     * @param phase      the failed request
+     * @param statusCode the response's status code
+     * @param message    the detail message
+     */
+    public CrawlException(Phase phase, int statusCode, String message) {
+        super(message);
+        this.phase = phase;
+        this.statusCode = statusCode;
+        this.line = null;
+    }
+
+    /**
+     * Creates a new exception for a request which failed with an I/O error.
+     *
+     * @param phase the failed request
+     * @param cause the I/O error
+     */
+    public CrawlException(Phase phase, IOException cause) {
+        super("the '" + phase + "' request failed: " + cause, cause);
+        this.phase = phase;
+        this.statusCode = NO_STATUS;
+        this.line = null;
+    }
+
+    /**
+     * Creates a new exception for a line whose search failed with the given exception, which is its cause.
+     *
+     * @param line     the line
+     * @param attempts the number of times the line was searched
+     * @param cause    the last failure
+     */
+    CrawlException(String line, int attempts, CrawlException cause) {
+        super("failed to search '" + line + "'" + (attempts > 1 ? " after " + attempts + " attempts" : "") +
+                ": " + cause.getMessage(), cause);
+        this.phase = cause.phase;
+        this.statusCode = cause.statusCode;
+        this.line = line;
+    }
+
+    /**
+     * Returns the failed request.
+     *
+     * @return the failed request
+     */
+    public Phase phase() {
+        return phase;
+    }
+
+    /**
+     * Returns the status code of the response.
+     *
+     * @return the status code, or {@link #NO_STATUS} if the request failed with an I/O error
+     */
+    public int statusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns the line whose search failed.
+     *
+     * @return the line, or {@code null} if unknown
+     */
+    public String line() {
+        return line;
+    }
+
+    /**
+     * Returns whether searching the line again may succeed, i.e., if the request failed with an I/O error, if the
+     * session has expired (403), if the request timed out (408), was throttled (429) or if the server failed (5xx).
+     *
+     * @return {@code true} if the failure is likely to be transient
+     */
+    public boolean isRetryable() {
+        return statusCode == NO_STATUS || statusCode == 403 || statusCode == 408 || statusCode == 429 ||
+                statusCode >= 500;
+    }
+}
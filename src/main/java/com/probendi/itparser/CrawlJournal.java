@@ -0,0 +1,227 @@
+package com.probendi.itparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoints the entries of every line as soon as the line has been searched, so that a crawl which was
+ * interrupted can be resumed without searching the same lines again.
+ * <p>
+ * The journal is a file to which a record is appended for every line: the length of the record's payload, its
+ * CRC-32, and the payload itself, i.e., the SHA-256 hash of the line's key followed by the entries encoded by
+ * {@link EntryCodec}. Every record is forced to the storage device before the line is deemed searched. On opening,
+ * the records are read up to the first incomplete or corrupted one, which was being written when the crawl was
+ * interrupted, and which is truncated along with anything after it.
+ * <p>
+ * The journal is meant to be deleted once the outputs have been written.
+ * <p>
+ * A journal is thread-safe.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public class CrawlJournal implements Closeable {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 30;
+
+    private final Path file;
+    private final FileChannel channel;
+    // the offset of the payload of each line's record, by hash
+    private final Map<String, Long> records = new ConcurrentHashMap<>();
+    private final AtomicInteger resumed = new AtomicInteger();
+
+    /**
+     * Opens the given journal, which is created if needed along with its directory.
+     *
+     * @param file the journal
+     * @throws IllegalArgumentException if file is {@code null}
+     * @throws IOException              if an I/O error occurs
+     */
+    public CrawlJournal(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file cannot be null");
+        }
+        this.file = file.toAbsolutePath();
+        Files.createDirectories(this.file.getParent());
+        channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            recover();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the entries of the given line, if it was searched by an interrupted run.
+     *
+     * @param key the key of the line's query
+     * @return the entries, or {@code null} if the line has not been searched yet
+     * @throws IllegalArgumentException if key is {@code null}
+     */
+    public Set<Entry> get(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        Long offset = records.get(CrawlManifest.keyHash(key));
+        if (offset == null) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(read(offset)));
+            in.readUTF();
+            Set<Entry> entries = EntryCodec.read(in);
+            resumed.incrementAndGet();
+            return entries;
+        } catch (IOException e) {
+            // the record was checked on opening, hence the line is merely searched again
+            return null;
+        }
+    }
+
+    /**
+     * Appends the entries of the given line, which has just been searched, and forces them to the storage device.
+     *
+     * @param key     the key of the line's query
+     * @param entries the entries
+     * @throws IllegalArgumentException if key or entries is {@code null}
+     * @throws IOException              if an I/O error occurs
+     */
+    public void append(String key, Set<Entry> entries) throws IOException {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        if (entries == null) {
+            throw new IllegalArgumentException("entries cannot be null");
+        }
+        String hash = CrawlManifest.keyHash(key);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeUTF(hash);
+        EntryCodec.write(out, entries);
+        if (payload.size() > MAX_RECORD_SIZE) {
+            throw new IOException("too many entries to be journaled: " + entries.size());
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.toByteArray());
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.size())
+                .putInt(payload.size())
+                .putInt((int) crc.getValue())
+                .put(payload.toByteArray())
+                .flip();
+        synchronized (this) {
+            long offset = channel.size();
+            for (long position = offset; record.hasRemaining(); ) {
+                position += channel.write(record, position);
+            }
+            channel.force(false);
+            records.put(hash, offset + HEADER_SIZE);
+        }
+    }
+
+    /**
+     * Returns the number of lines of the current run which were read from the journal.
+     *
+     * @return the number of resumed lines
+     */
+    public int resumed() {
+        return resumed.get();
+    }
+
+    /**
+     * Returns the number of lines held by the journal.
+     *
+     * @return the number of lines
+     */
+    public int size() {
+        return records.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Closes and deletes the journal.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void delete() throws IOException {
+        try {
+            close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Reads the records, and truncates the journal after the last valid one.
+     */
+    private void recover() throws IOException {
+        long size = channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (size - offset >= HEADER_SIZE) {
+            header.clear();
+            readFully(header, offset);
+            int length = header.getInt(0);
+            if (length < 0 || length > MAX_RECORD_SIZE || size - offset - HEADER_SIZE < length) {
+                break;
+            }
+            byte[] payload = read(offset + HEADER_SIZE, length);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != header.getInt(4)) {
+                break;
+            }
+            records.put(new DataInputStream(new ByteArrayInputStream(payload)).readUTF(), offset + HEADER_SIZE);
+            offset += HEADER_SIZE + length;
+        }
+        if (offset < size) {
+            channel.truncate(offset);
+        }
+    }
+
+    /**
+     * Reads the payload at the given offset.
+     */
+    private byte[] read(long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(length, offset - HEADER_SIZE);
+        return read(offset, length.getInt(0));
+    }
+
+    private byte[] read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(buffer, offset);
+        return buffer.array();
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("unexpected end of " + file);
+            }
+        }
+    }
+}
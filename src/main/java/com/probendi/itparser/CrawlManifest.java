@@ -0,0 +1,227 @@
+package com.probendi.itparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Records which lines have been crawled, so that a later run crawls only the lines which are new or whose query
+ * has changed.
+ * <p>
+ * The manifest, {@code manifest.tsv}, lists the SHA-256 hash of each line's key, i.e., of the line with its
+ * whitespace normalized and the options of the query, the number of its cases and the line itself. The entries
+ * of each line are stored next to the manifest, encoded by {@link EntryCodec}, in a segment file named after the
+ * hash. A line whose key hash is listed in the manifest is read from its segment rather than crawled.
+ * <p>
+ * The key hash identifies the query, not the results downloaded for it: should the results of a line change on
+ * the server while the line and the options stay the same, the line is read from its segment nonetheless. Deleting
+ * the manifest crawls every line again.
+ * <p>
+ * The manifest is rewritten by {@link #save()}, which is meant to be called once the outputs have been written:
+ * it lists the lines of the current run only, and the segments of the lines which are no longer listed are
+ * deleted.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public class CrawlManifest {
+
+    private static final String MANIFEST = "manifest.tsv";
+    private static final String SUFFIX = ".entries";
+    private static final int MAGIC = 0x49544d31; // ITM1
+
+    private record Line(String keyHash, int cases, String line) {
+    }
+
+    private final Path directory;
+    private final Map<String, Line> previous = new HashMap<>();
+    private final Map<String, Line> current = new ConcurrentHashMap<>();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final String worker = ManagementFactory.getRuntimeMXBean().getName().replaceAll("[^A-Za-z0-9.-]", "_");
+
+    /**
+     * Opens the manifest stored in the given directory, which is created if needed.
+     *
+     * @param directory the directory
+     * @throws IllegalArgumentException if directory is {@code null}
+     * @throws IOException              if the directory cannot be created or if the manifest cannot be read
+     */
+    public CrawlManifest(Path directory) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+        this.directory = Files.createDirectories(directory);
+        Path manifest = directory.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            for (String s : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                String[] fields = s.split("\t", 3);
+                if (fields.length != 3) {
+                    throw new IOException("malformed manifest " + manifest + ": " + s);
+                }
+                try {
+                    previous.put(fields[0], new Line(fields[0], Integer.parseInt(fields[1]), fields[2]));
+                } catch (NumberFormatException e) {
+                    throw new IOException("malformed manifest " + manifest + ": " + s);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the entries of the given line, if it was crawled by a previous run.
+     *
+     * @param key  the key of the line's query
+     * @param line the line
+     * @return the entries, or {@code null} if the line is new or its query has changed
+     * @throws IllegalArgumentException if key or line is {@code null}
+     */
+    public Set<Entry> get(String key, String line) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        if (line == null) {
+            throw new IllegalArgumentException("line cannot be null");
+        }
+        String keyHash = keyHash(key);
+        Line previousLine = previous.get(keyHash);
+        if (previousLine == null) {
+            return null;
+        }
+        try (InputStream is = Files.newInputStream(segment(keyHash));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            Set<Entry> entries = EntryCodec.read(in);
+            current.put(keyHash, new Line(keyHash, entries.size(), line));
+            unchanged.incrementAndGet();
+            return entries;
+        } catch (IOException e) {
+            // a missing or corrupted segment is crawled again
+            return null;
+        }
+    }
+
+    /**
+     * Stores the entries of the given line, which has just been crawled.
+     *
+     * @param key     the key of the line's query
+     * @param line    the line
+     * @param entries the entries
+     * @throws IllegalArgumentException if key, line or entries is {@code null}
+     * @throws IOException              if an I/O error occurs
+     */
+    public void put(String key, String line, Set<Entry> entries) throws IOException {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        if (line == null) {
+            throw new IllegalArgumentException("line cannot be null");
+        }
+        if (entries == null) {
+            throw new IllegalArgumentException("entries cannot be null");
+        }
+        String keyHash = keyHash(key);
+        Path segment = segment(keyHash);
+        Path tmp = segment.resolveSibling(segment.getFileName() + "." + worker + "." +
+                Thread.currentThread().threadId() + ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+                out.writeInt(MAGIC);
+                EntryCodec.write(out, entries);
+            }
+            Files.move(tmp, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        current.put(keyHash, new Line(keyHash, entries.size(), line));
+    }
+
+    /**
+     * Returns the number of lines of the current run which were read from their segments.
+     *
+     * @return the number of unchanged lines
+     */
+    public int unchanged() {
+        return unchanged.get();
+    }
+
+    /**
+     * Rewrites the manifest with the lines of the current run, and deletes the segments of the other lines.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void save() throws IOException {
+        List<Line> lines = new ArrayList<>(current.values());
+        lines.sort(Comparator.comparing(Line::line).thenComparing(Line::keyHash));
+        List<String> rows = new ArrayList<>(lines.size());
+        for (Line line : lines) {
+            rows.add(line.keyHash() + "\t" + line.cases() + "\t" + line.line().replaceAll("[\t\r\n]", " "));
+        }
+        Path manifest = directory.resolve(MANIFEST);
+        Path tmp = directory.resolve(MANIFEST + "." + worker + "." + Thread.currentThread().threadId() + ".tmp");
+        try {
+            Files.write(tmp, rows, StandardCharsets.UTF_8);
+            Files.move(tmp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SUFFIX) && !current.containsKey(name.substring(0, name.length() - SUFFIX.length()))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        previous.clear();
+        previous.putAll(current);
+    }
+
+    private Path segment(String keyHash) {
+        return directory.resolve(keyHash + SUFFIX);
+    }
+
+    /**
+     * Returns the SHA-256 hash of the given key, in hexadecimal, which identifies its line in the manifest, the
+     * journal, the cache and the archive.
+     *
+     * @param key the key of a line's query
+     * @return the hash of the key
+     */
+    static String keyHash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.probendi.itparser;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Measures where the time of a crawl goes.
+ * <p>
+ * The latency of every request is recorded in a histogram of its phase: for the 'concordances' requests, it is the
+ * time until the response's headers are received, the body being streamed into the parser, which is timed apart,
+ * as is the time spent parsing it. For the other requests, it is the time until the whole response is received.
+ * The metrics also count the bytes downloaded and the entries parsed, and time the consolidation of the entries
+ * and their writing.
+ * <p>
+ * The histograms have four buckets per power of two of microseconds, hence the percentiles are accurate within
+ * 25%. Recording is lock-free, so that the metrics can be shared by all the lines searched at the same time.
+ * <p>
+ * The metrics are exposed through JMX, once registered with an {@link javax.management.MBeanServer}, and can be
+ * summarized as JSON by {@link #writeJson(Path)}.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public class CrawlMetrics implements CrawlMetricsMXBean {
+
+    /**
+     * The name under which {@code it-parser} registers its metrics.
+     */
+    public static final String OBJECT_NAME = "com.probendi.itparser:type=CrawlMetrics";
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    private final long start = System.nanoTime();
+    private final Map<CrawlException.Phase, Histogram> phases = new EnumMap<>(CrawlException.Phase.class);
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder bytesDownloaded = new LongAdder();
+    private final LongAdder entriesParsed = new LongAdder();
+    private final LongAdder concordancesNanos = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder consolidationNanos = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final LongAdder entriesWritten = new LongAdder();
+
+    /**
+     * Creates new metrics, whose clock starts now.
+     */
+    public CrawlMetrics() {
+        for (CrawlException.Phase phase : CrawlException.Phase.values()) {
+            phases.put(phase, new Histogram());
+        }
+    }
+
+    /**
+     * Records a request.
+     *
+     * @param phase the request's phase
+     * @param nanos the request's latency, in nanoseconds
+     */
+    void recordRequest(CrawlException.Phase phase, long nanos) {
+        phases.get(phase).record(nanos);
+    }
+
+    /**
+     * Records the concordances of a line.
+     *
+     * @param nanos      the time spent streaming the pages, in nanoseconds
+     * @param parseNanos the time spent parsing them, summed over the threads which parse them, in nanoseconds
+     * @param entries    the number of entries parsed
+     */
+    void recordConcordances(long nanos, long parseNanos, int entries) {
+        concordancesNanos.add(nanos);
+        this.parseNanos.add(parseNanos);
+        entriesParsed.add(entries);
+    }
+
+    /**
+     * Records a line, whatever the source of its entries.
+     */
+    void recordLine() {
+        lines.increment();
+    }
+
+    /**
+     * Records the time spent merging and ordering the entries.
+     *
+     * @param nanos the time, in nanoseconds
+     */
+    void recordConsolidation(long nanos) {
+        consolidationNanos.add(nanos);
+    }
+
+    /**
+     * Records time spent writing the entries, e.g., closing the files.
+     *
+     * @param nanos   the time, in nanoseconds
+     * @param entries the number of entries written
+     */
+    public void recordWrite(long nanos, int entries) {
+        writeNanos.add(nanos);
+        entriesWritten.add(entries);
+    }
+
+    /**
+     * Returns a handler which counts the bytes of the bodies handled by the given handler.
+     *
+     * @param handler the handler
+     * @param <T>     the type of the response's body
+     * @return the counting handler
+     */
+    <T> HttpResponse.BodyHandler<T> countBytes(HttpResponse.BodyHandler<T> handler) {
+        return info -> new CountingSubscriber<>(handler.apply(info), bytesDownloaded);
+    }
+
+    /**
+     * Returns a sink which times the given sink, and records the entries it is passed.
+     *
+     * @param sink the sink
+     * @return the timed sink
+     */
+    TimedSink timed(EntrySink sink) {
+        return new TimedSink(sink);
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Override
+    public long getLines() {
+        return lines.sum();
+    }
+
+    @Override
+    public Map<String, Long> getRequests() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        phases.forEach((phase, histogram) -> map.put(phase.toString(), histogram.count.sum()));
+        return map;
+    }
+
+    @Override
+    public Map<String, Double> getMeanLatencyMillis() {
+        return byPhase(Histogram::meanMillis);
+    }
+
+    @Override
+    public Map<String, Double> getP99LatencyMillis() {
+        return byPhase(histogram -> histogram.percentileMillis(0.99));
+    }
+
+    @Override
+    public long getBytesDownloaded() {
+        return bytesDownloaded.sum();
+    }
+
+    @Override
+    public long getEntriesParsed() {
+        return entriesParsed.sum();
+    }
+
+    @Override
+    public double getEntriesParsedPerSecond() {
+        return perSecond(entriesParsed.sum(), System.nanoTime() - start);
+    }
+
+    @Override
+    public long getConcordancesMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(concordancesNanos.sum());
+    }
+
+    @Override
+    public long getParseMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(parseNanos.sum());
+    }
+
+    @Override
+    public long getConsolidationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(consolidationNanos.sum());
+    }
+
+    @Override
+    public long getWriteMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writeNanos.sum());
+    }
+
+    @Override
+    public long getEntriesWritten() {
+        return entriesWritten.sum();
+    }
+
+    @Override
+    public double getEntriesWrittenPerSecond() {
+        return perSecond(entriesWritten.sum(), writeNanos.sum());
+    }
+
+    /**
+     * Returns a JSON summary of the metrics.
+     *
+     * @return the summary
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{");
+        field(sb, "elapsedMillis", getElapsedMillis());
+        field(sb, "lines", getLines());
+        field(sb, "bytesDownloaded", getBytesDownloaded());
+        field(sb, "entriesParsed", getEntriesParsed());
+        field(sb, "entriesParsedPerSecond", getEntriesParsedPerSecond());
+        field(sb, "concordancesMillis", getConcordancesMillis());
+        field(sb, "parseMillis", getParseMillis());
+        field(sb, "consolidationMillis", getConsolidationMillis());
+        field(sb, "writeMillis", getWriteMillis());
+        field(sb, "entriesWritten", getEntriesWritten());
+        field(sb, "entriesWrittenPerSecond", getEntriesWrittenPerSecond());
+        sb.append("\"phases\":{");
+        phases.forEach((phase, histogram) -> {
+            sb.append('"').append(phase).append("\":{");
+            field(sb, "count", histogram.count.sum());
+            field(sb, "meanMillis", histogram.meanMillis());
+            field(sb, "maxMillis", histogram.max.get() / 1e6);
+            for (double p : PERCENTILES) {
+                field(sb, "p" + Math.round(p * 100) + "Millis", histogram.percentileMillis(p));
+            }
+            sb.setCharAt(sb.length() - 1, '}');
+            sb.append(',');
+        });
+        sb.setCharAt(sb.length() - 1, '}');
+        return sb.append("}\n").toString();
+    }
+
+    /**
+     * Writes a JSON summary of the metrics to the given file.
+     *
+     * @param file the file
+     * @throws IllegalArgumentException if file is {@code null}
+     * @throws IOException              if an I/O error occurs
+     */
+    public void writeJson(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file cannot be null");
+        }
+        Path target = file.toAbsolutePath();
+        Path tmp = ChannelOutput.createTempFile(target, ".tmp");
+        try {
+            Files.writeString(tmp, toJson(), StandardCharsets.UTF_8);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    private Map<String, Double> byPhase(ToDoubleFunction<Histogram> f) {
+        Map<String, Double> map = new LinkedHashMap<>();
+        phases.forEach((phase, histogram) -> map.put(phase.toString(), f.applyAsDouble(histogram)));
+        return map;
+    }
+
+    private static double perSecond(long count, long nanos) {
+        return nanos == 0 ? 0 : count * 1e9 / nanos;
+    }
+
+    private static void field(StringBuilder sb, String name, long value) {
+        sb.append('"').append(name).append("\":").append(value).append(',');
+    }
+
+    private static void field(StringBuilder sb, String name, double value) {
+        sb.append('"').append(name).append("\":").append(String.format(Locale.ROOT, "%.3f", value)).append(',');
+    }
+
+    /**
+     * A histogram of latencies, with four buckets per power of two of microseconds.
+     */
+    private static final class Histogram {
+
+        private static final int BUCKETS = 64 * 4;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos) {
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+            buckets.incrementAndGet(bucket(TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos))));
+        }
+
+        double meanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : total.sum() / 1e6 / n;
+        }
+
+        /**
+         * Returns the upper bound of the bucket holding the given percentile.
+         */
+        double percentileMillis(double p) {
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                n += buckets.get(i);
+            }
+            long rank = (long) Math.ceil(p * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS && rank > 0; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return upperBound(i) / 1e3;
+                }
+            }
+            return 0;
+        }
+
+        private static int bucket(long micros) {
+            if (micros < 4) {
+                return (int) micros;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            return exponent * 4 + (int) (micros >> (exponent - 2) & 3);
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < 4) {
+                return bucket + 1;
+            }
+            int exponent = bucket / 4;
+            return (long) (4 + bucket % 4 + 1) << (exponent - 2);
+        }
+    }
+
+    /**
+     * Counts the bytes of a response's body on their way to the actual subscriber.
+     */
+    private record CountingSubscriber<T>(HttpResponse.BodySubscriber<T> subscriber, LongAdder bytes)
+            implements HttpResponse.BodySubscriber<T> {
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return subscriber.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscriber.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            long n = 0;
+            for (ByteBuffer buffer : item) {
+                n += buffer.remaining();
+            }
+            bytes.add(n);
+            subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            subscriber.onComplete();
+        }
+    }
+
+    /**
+     * Times the entries passed to a sink.
+     */
+    final class TimedSink implements EntrySink {
+
+        private final EntrySink sink;
+        private long nanos;
+
+        private TimedSink(EntrySink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void accept(ConsolidatedEntry entry) throws IOException {
+            long t = System.nanoTime();
+            sink.accept(entry);
+            t = System.nanoTime() - t;
+            nanos += t;
+            recordWrite(t, 1);
+        }
+
+        @Override
+        public void close() throws IOException {
+            long t = System.nanoTime();
+            sink.close();
+            recordWrite(System.nanoTime() - t, 0);
+        }
+
+        @Override
+        public void abort() throws IOException {
+            sink.abort();
+        }
+
+        /**
+         * Returns the time spent by the sink.
+         *
+         * @return the time, in nanoseconds
+         */
+        long nanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.probendi.itparser;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link CrawlMetrics}, through which a running crawl can be watched with any JMX
+ * client, e.g., JConsole.
+ * <p>
+ * The per-phase attributes are keyed by the name of the request, e.g., {@code new search} or
+ * {@code concordances}.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public interface CrawlMetricsMXBean {
+
+    /**
+     * Returns the time elapsed since the crawl started.
+     *
+     * @return the elapsed time, in milliseconds
+     */
+    long getElapsedMillis();
+
+    /**
+     * Returns the number of lines searched, or read from the cache, the journal or the manifest.
+     *
+     * @return the number of lines
+     */
+    long getLines();
+
+    /**
+     * Returns the number of requests of each phase.
+     *
+     * @return the number of requests, by phase
+     */
+    Map<String, Long> getRequests();
+
+    /**
+     * Returns the mean latency of the requests of each phase.
+     *
+     * @return the mean latency in milliseconds, by phase
+     */
+    Map<String, Double> getMeanLatencyMillis();
+
+    /**
+     * Returns the 99th percentile of the latency of the requests of each phase.
+     *
+     * @return the 99th percentile in milliseconds, by phase
+     */
+    Map<String, Double> getP99LatencyMillis();
+
+    /**
+     * Returns the number of bytes of the responses' bodies.
+     *
+     * @return the number of bytes downloaded
+     */
+    long getBytesDownloaded();
+
+    /**
+     * Returns the number of entries parsed from the concordances.
+     *
+     * @return the number of entries parsed
+     */
+    long getEntriesParsed();
+
+    /**
+     * Returns the number of entries parsed per second since the crawl started.
+     *
+     * @return the parsing throughput
+     */
+    double getEntriesParsedPerSecond();
+
+    /**
+     * Returns the time spent streaming the concordances, which are parsed as they arrive.
+     *
+     * @return the time in milliseconds
+     */
+    long getConcordancesMillis();
+
+    /**
+     * Returns the time spent parsing the concordances, summed over the threads which parse them in parallel, hence
+     * it may exceed {@link #getConcordancesMillis()}.
+     *
+     * @return the time in milliseconds
+     */
+    long getParseMillis();
+
+    /**
+     * Returns the time spent merging and ordering the entries.
+     *
+     * @return the time in milliseconds
+     */
+    long getConsolidationMillis();
+
+    /**
+     * Returns the time spent writing the consolidated entries.
+     *
+     * @return the time in milliseconds
+     */
+    long getWriteMillis();
+
+    /**
+     * Returns the number of consolidated entries written.
+     *
+     * @return the number of entries written
+     */
+    long getEntriesWritten();
+
+    /**
+     * Returns the number of consolidated entries written per second of {@link #getWriteMillis()}.
+     *
+     * @return the writing throughput
+     */
+    double getEntriesWrittenPerSecond();
+}
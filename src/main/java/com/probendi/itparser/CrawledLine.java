@@ -0,0 +1,17 @@
+package com.probendi.itparser;
+
+import java.util.Set;
+
+/**
+ * The entries found for a line, as published by {@link Crawler#publish()}.
+ *
+ * @param line    the line, i.e., a term, optionally followed by its forms, a lemma or an expression
+ * @param entries the entries of the line, ordered by case number
+ *
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public record CrawledLine(String line, Set<Entry> entries) {
+}
@@ -1,16 +1,34 @@
 package com.probendi.itparser;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.regex.MatchResult;
-import java.util.regex.Pattern;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Searches the <a href="https://www.corpusthomisticum.org/it/index.age">Index Thomisticus</a>.for all occurrences of
@@ -21,21 +39,42 @@ import java.util.regex.Pattern;
  * @author Daniele Di Salvo
  * @since 1.0
  */
-public class Crawler {
+public class Crawler implements AutoCloseable {
 
     private static final String COOKIE = "Cookie";
 
     private static final String CONTENT_TYPE = "Content-Type";
     private static final String CONTENT_TYPE_FORM = "application/x-www-form-urlencoded";
 
-    private static final int FIRST_AUTHENTIC_WORK = 0;
-    private static final int LAST_AUTHENTIC_WORK = 114;
+    /**
+     * The index of the first authentic work, the first one searched by default.
+     */
+    public static final int FIRST_AUTHENTIC_WORK = 0;
 
-    private static final URI INDEX_THOMISTICUS = URI.create("https://www.corpusthomisticum.org/it/index.age");
+    /**
+     * The index of the last authentic work, the last one searched by default.
+     */
+    public static final int LAST_AUTHENTIC_WORK = 114;
+
+    /**
+     * The endpoint of the {@code Index Thomisticus}.
+     */
+    public static final URI INDEX_THOMISTICUS = URI.create("https://www.corpusthomisticum.org/it/index.age");
 
     private static final int PAGE_SIZE = 10_000;
+    private static final int MAX_PAGES_IN_FLIGHT = 4;
+
+    private static final Duration MAX_RETRY_BACKOFF = Duration.ofMinutes(1);
+    // the executor of the clients built by the crawlers, which runs each task on a virtual thread, hence keeps no
+    // thread once the tasks are done and never needs to be shut down
+    private static final Executor CLIENT_EXECUTOR =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("it-parser-http-", 0).factory());
 
-    private static final String FORM_DATA_CONCORDANCES = "&exhaustive=false" +
+    /**
+     * The default options of the 'concordances' request, as URL-encoded form data: all the textual units and
+     * authorships, two additional lines and records per result, and every match option.
+     */
+    public static final String DEFAULT_CONCORDANCE_OPTIONS = "&exhaustive=false" +
             "&asyndetonAll=true" +
             "&ordered=false" +
             "&minWordsBetweenTermsNoOrder=0" +
@@ -62,7 +101,6 @@ public class Crawler {
             "&authorship.booleanOptions%5B3%5D.selected=on" +
             "&authorship.booleanOptions%5B4%5D.selected=on" +
             "&authorship.booleanOptions%5B5%5D.selected=on" +
-            "&results.pageSize=" + PAGE_SIZE +
             "&results.presentation=1" +
             "&results.additionalPeriods=0" +
             "&results.additionalLines=2" +
@@ -119,84 +157,573 @@ public class Crawler {
             "&matchOptions.options%5B4%5D.booleanOptions%5B6%5D.selected=on" +
             "&matchOptions.options%5B4%5D.booleanOptions%5B7%5D.selected=on" +
             "&matchOptions.options%5B4%5D.booleanOptions%5B8%5D.selected=on" +
-            "&divisionNumber=2" +
-            "&Form.option.concordances=concordances";
+            "&divisionNumber=2";
 
-    private final HttpClient client = HttpClient.newHttpClient();
+    private final HttpClient client;
+    // whether the client was built by this crawler, rather than given to it
+    private final boolean ownClient;
     private final List<String> lines;
+    private final int maxConcurrency;
+    private final ResponseCache cache;
+    private final MemoryCache memoryCache;
+    private final ResponseArchive archive;
+    private final boolean offline;
+    private final CrawlManifest manifest;
+    private final CrawlJournal journal;
+    private final int retries;
+    private final Duration retryBackoff;
+    private final HttpRequest requestTemplate;
+    private final RequestTemplates templates;
+    private final AdaptiveLimiter limiter;
+    private final CrawlMetrics metrics;
+    private final ForkJoinPool parserPool;
+    private final Deque<String> idleSessions;
+    private final EntryOrder order;
 
     /**
-     * Creates a new {@code Crawler} with the given parameters.
+     * Creates a new {@code Crawler} which searches the given lines one after another.
      *
      * @param lines a list of freely mixed terms, e.g., {@code ens}, lemmas, e.g., {@code #26153},
      *              and expression, e.g., {@code "id quod est"}.
      *              A term can be followed by one or more forms, e.g., {@code 78} (ens) and {@code 79} (entis)
-     * @throws IllegalArgumentException if term is {@code null} or empty, or if forms is {@code null}
+     * @throws IllegalArgumentException if lines is {@code null}
      */
     public Crawler(List<String> lines) {
+        this(newBuilder(lines));
+    }
+
+    /**
+     * Creates a new {@code Crawler} which searches up to {@code maxConcurrency} lines at the same time.
+     *
+     * @param lines          a list of freely mixed terms, lemmas and expressions
+     * @param maxConcurrency the maximum number of sessions in flight; {@code 1} searches the lines sequentially
+     * @throws IllegalArgumentException if lines is {@code null}, or if maxConcurrency is not strictly positive
+     */
+    public Crawler(List<String> lines, int maxConcurrency) {
+        this(newBuilder(lines).maxConcurrency(maxConcurrency));
+    }
+
+    /**
+     * Creates a new {@code Crawler} which queries the given endpoint.
+     *
+     * @param endpoint       the endpoint of the {@code Index Thomisticus}
+     * @param lines          a list of freely mixed terms, lemmas and expressions
+     * @param maxConcurrency the maximum number of sessions in flight; {@code 1} searches the lines sequentially
+     * @throws IllegalArgumentException if endpoint or lines is {@code null}, or if maxConcurrency is not strictly
+     *                                  positive
+     */
+    public Crawler(URI endpoint, List<String> lines, int maxConcurrency) {
+        this(newBuilder(lines).endpoint(endpoint).maxConcurrency(maxConcurrency));
+    }
+
+    private Crawler(Builder builder) {
+        this.lines = builder.lines;
+        this.maxConcurrency = builder.maxConcurrency;
+        this.cache = builder.cache;
+        this.memoryCache = builder.memoryCache;
+        this.archive = builder.archive;
+        this.offline = builder.offline;
+        this.manifest = builder.manifest;
+        this.journal = builder.journal;
+        this.retries = builder.retries;
+        this.retryBackoff = builder.retryBackoff;
+        this.requestTemplate = HttpRequest.newBuilder()
+                .uri(builder.endpoint)
+                .timeout(builder.requestTimeout)
+                .header(CONTENT_TYPE, CONTENT_TYPE_FORM)
+                .build();
+        this.templates = new RequestTemplates(builder.firstWork, builder.lastWork, builder.concordanceOptions,
+                PAGE_SIZE);
+        this.metrics = builder.metrics;
+        // on a single core the chunks would only be parsed later, not sooner
+        this.parserPool = builder.parallelParsing && Runtime.getRuntime().availableProcessors() > 1
+                ? ForkJoinPool.commonPool() : null;
+        this.limiter = builder.adaptiveConcurrency || builder.maxRequestsPerSecond > 0
+                ? new AdaptiveLimiter(builder.adaptiveConcurrency ? builder.maxConcurrency : Integer.MAX_VALUE,
+                        builder.adaptiveConcurrency, builder.maxRequestsPerSecond)
+                : null;
+        this.idleSessions = builder.reuseSessions ? new ConcurrentLinkedDeque<>() : null;
+        this.order = builder.order;
+        this.ownClient = builder.client == null;
+        this.client = builder.client != null ? builder.client : HttpClient.newBuilder()
+                .version(builder.version)
+                .connectTimeout(builder.connectTimeout)
+                .executor(builder.executor != null ? builder.executor : CLIENT_EXECUTOR)
+                .build();
+    }
+
+    private Crawler(Crawler crawler, List<String> lines, EntryOrder order) {
         this.lines = lines;
+        this.maxConcurrency = crawler.maxConcurrency;
+        this.cache = crawler.cache;
+        this.memoryCache = crawler.memoryCache;
+        this.archive = crawler.archive;
+        this.offline = crawler.offline;
+        // the manifest and the journal belong to a single run
+        this.manifest = null;
+        this.journal = null;
+        this.retries = crawler.retries;
+        this.retryBackoff = crawler.retryBackoff;
+        this.requestTemplate = crawler.requestTemplate;
+        this.templates = crawler.templates;
+        this.metrics = crawler.metrics;
+        this.parserPool = crawler.parserPool;
+        this.limiter = crawler.limiter;
+        this.idleSessions = crawler.idleSessions;
+        this.order = order;
+        this.client = crawler.client;
+        // the client belongs to the original crawler
+        this.ownClient = false;
+    }
+
+    /**
+     * Returns a crawler which searches the given lines and orders their entries as given, sharing the client, the
+     * sessions, the limiter, the caches, the archive and the metrics of this crawler, but neither its manifest nor its
+     * journal.
+     *
+     * @param lines a list of freely mixed terms, lemmas and expressions
+     * @param order the order of the consolidated entries
+     * @return a new crawler
+     * @throws IllegalArgumentException if lines or order is {@code null}
+     */
+    Crawler withLines(List<String> lines, EntryOrder order) {
+        if (lines == null) {
+            throw new IllegalArgumentException("lines cannot be null");
+        }
+        if (order == null) {
+            throw new IllegalArgumentException("order cannot be null");
+        }
+        return new Crawler(this, lines, order);
+    }
+
+    /**
+     * Closes the HTTP client built by this crawler, if any, once the requests in flight are done, releasing its
+     * connections. A client given to the builder is left open. The crawlers returned by
+     * {@link #withLines(List, EntryOrder)} share the client, hence must not be used afterwards.
+     * <p>
+     * A crawler which is not closed holds no thread of its own: its client's connections are released once the
+     * crawler is no longer reachable.
+     *
+     * @since 3.1
+     */
+    @Override
+    public void close() {
+        if (ownClient) {
+            client.close();
+        }
+    }
+
+    /**
+     * Returns a new {@link Builder} of a {@code Crawler} which searches the given lines.
+     *
+     * @param lines a list of freely mixed terms, lemmas and expressions
+     * @return a new {@link Builder}
+     * @throws IllegalArgumentException if lines is {@code null}
+     */
+    public static Builder newBuilder(List<String> lines) {
+        return new Builder(lines);
     }
 
     /**
      * Searches the {@code Index Thomisticus} for all occurrences of the given {@code term}'s {@code forms}.
      *
      * @return a list of {@link ConsolidatedEntry} objects
+     * @throws CrawlException       if a line could not be searched
      * @throws IOException          if an I/O error occurs
      * @throws InterruptedException if the thread is interrupted
      */
     public List<ConsolidatedEntry> crawl() throws IOException, InterruptedException {
-        Set<Entry> entries = new TreeSet<>();
-
-        for (String line : lines) {
-            String sessionId = sendNewSearchRequest();
-
-            String term;
-            if (!line.startsWith("#") && !line.startsWith("\"")) {
-                String[] strings = line.split(" ");
-                term = strings[0];
-                sendTermRequest(sessionId, term);
-                sendFormsRequest(sessionId, strings);
-            } else {
-                term = line;
+        ListSink sink = new ListSink();
+        crawl(sink);
+        return sink.entries;
+    }
+
+    /**
+     * Searches the {@code Index Thomisticus} for all occurrences of the given {@code term}'s {@code forms}, passing
+     * the consolidated entries to the given sink. The sink is not closed.
+     * <p>
+     * The entries of each line are merged by place number into the entries of the previous lines as soon as the
+     * line has been searched, and are released right away. Since the consolidated entries are ordered across all
+     * the lines, they are passed to the sink once every line has been searched.
+     *
+     * @param sink the sink of the consolidated entries
+     * @throws IllegalArgumentException if sink is {@code null}
+     * @throws CrawlException           if a line could not be searched
+     * @throws IOException              if an I/O error occurs
+     * @throws InterruptedException     if the thread is interrupted
+     * @since 3.1
+     */
+    public void crawl(EntrySink sink) throws IOException, InterruptedException {
+        if (sink == null) {
+            throw new IllegalArgumentException("sink cannot be null");
+        }
+        Consolidator consolidator = new Consolidator();
+        crawlLines((line, entries) -> merge(consolidator, entries), Integer.MAX_VALUE);
+
+        if (metrics == null) {
+            consolidator.drain(order, sink);
+            return;
+        }
+        CrawlMetrics.TimedSink timed = metrics.timed(sink);
+        long start = System.nanoTime();
+        consolidator.drain(order, timed);
+        metrics.recordConsolidation(System.nanoTime() - start - timed.nanos());
+    }
+
+    /**
+     * Returns a publisher of the entries found for each line, which are published in the same order as the lines.
+     * The lines are searched for each subscriber anew, once it has subscribed, and only as fast as the subscriber
+     * requests them: at most {@code maxConcurrency} lines are searched, or waiting to be published, ahead of the
+     * lines requested, and as many lines are buffered for the subscriber. Hence, a slow subscriber throttles the
+     * crawl, rather than the entries piling up in memory.
+     * <p>
+     * The entries are not consolidated. The subscriber is notified on a virtual thread of its own, so that it can
+     * block, e.g., on a database. Should a line fail, the subscriber's {@code onError} receives the
+     * {@link CrawlException}. Cancelling the subscription stops the crawl.
+     *
+     * @return the publisher of the lines' entries
+     * @since 3.1
+     */
+    public Flow.Publisher<CrawledLine> publish() {
+        return subscriber -> {
+            if (subscriber == null) {
+                // as required by Flow.Publisher
+                throw new NullPointerException("subscriber cannot be null");
+            }
+            SubmissionPublisher<CrawledLine> publisher = new SubmissionPublisher<>(
+                    task -> Thread.ofVirtual().name("it-parser-subscriber").start(task), maxConcurrency);
+            publisher.subscribe(subscriber);
+            Thread.ofVirtual().name("it-parser-publisher").start(() -> {
+                try {
+                    crawlLines((line, entries) -> {
+                        if (!publisher.hasSubscribers()) {
+                            throw new CancellationException("the subscription was cancelled");
+                        }
+                        // blocks as long as the subscriber's buffer is full
+                        publisher.submit(new CrawledLine(line, entries));
+                    }, maxConcurrency);
+                    publisher.close();
+                } catch (CancellationException e) {
+                    publisher.close();
+                } catch (Exception e) {
+                    publisher.closeExceptionally(e);
+                }
+            });
+        };
+    }
+
+    /**
+     * Receives the entries of a line, in the same order as the lines.
+     */
+    @FunctionalInterface
+    private interface LineConsumer {
+
+        void accept(String line, Set<Entry> entries) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Searches the lines, passing the entries of each line to the given consumer in the same order as the lines.
+     *
+     * @param consumer the consumer of the lines' entries
+     * @param window   the maximum number of lines which are searched, or have been searched but not yet consumed,
+     *                 at the same time
+     * @throws IOException          if an I/O error occurs
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private void crawlLines(LineConsumer consumer, int window) throws IOException, InterruptedException {
+        if (maxConcurrency == 1) {
+            for (String line : lines) {
+                consumer.accept(line, crawlLine(line));
+            }
+        } else {
+            crawlConcurrently(consumer, window);
+        }
+    }
+
+    /**
+     * Merges the entries of a line into the entries of the previous lines.
+     *
+     * @param consolidator the consolidator
+     * @param entries      the entries of the line
+     */
+    private void merge(Consolidator consolidator, Set<Entry> entries) {
+        if (metrics == null) {
+            consolidator.addAll(entries);
+            return;
+        }
+        long start = System.nanoTime();
+        consolidator.addAll(entries);
+        metrics.recordConsolidation(System.nanoTime() - start);
+    }
+
+    /**
+     * Searches each line on its own virtual thread, with at most {@code maxConcurrency} sessions in flight.
+     *
+     * @param consumer the consumer of the lines' entries, to which they are passed in the same order as the lines,
+     *                 exactly as the sequential path does
+     * @param window   the maximum number of lines which are searched, or have been searched but not yet consumed,
+     *                 at the same time
+     * @throws IOException          if an I/O error occurs
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private void crawlConcurrently(LineConsumer consumer, int window) throws IOException, InterruptedException {
+        Semaphore permits = new Semaphore(maxConcurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Deque<Future<Set<Entry>>> futures = new ArrayDeque<>();
+            Iterator<String> searched = lines.iterator();
+            Iterator<String> consumed = lines.iterator();
+            try {
+                while (consumed.hasNext()) {
+                    while (futures.size() < window && searched.hasNext()) {
+                        String line = searched.next();
+                        futures.add(executor.submit(() -> {
+                            permits.acquire();
+                            try {
+                                return crawlLine(line);
+                            } finally {
+                                permits.release();
+                            }
+                        }));
+                    }
+                    consumer.accept(consumed.next(), await(futures.poll()));
+                }
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                executor.shutdownNow();
+                throw e;
             }
+        }
+    }
 
-            sendWorksRequest(sessionId, term);
-            entries.addAll(sendConcordancesRequest(sessionId, term));
+    /**
+     * Returns the entries of the given line, either from the manifest of a previous run, from the journal of an
+     * interrupted run, from the memory cache, from the cache, or by running the 'new search', 'term', 'forms',
+     * 'works' and 'concordances' requests within a session of its own. The entries which were not read from the
+     * journal are appended to it. An offline crawler parses the line's pages from the archive instead.
+     *
+     * @param line a term, optionally followed by its forms, a lemma or an expression
+     * @return a set of parsed {@link Entry} objects
+     * @throws CrawlException       if the line could not be searched
+     * @throws IOException          if an I/O error occurs
+     * @throws InterruptedException if the thread is interrupted
+     */
+    protected Set<Entry> crawlLine(String line) throws IOException, InterruptedException {
+        String key = cacheKey(line);
+        if (metrics != null) {
+            metrics.recordLine();
+        }
+        if (offline) {
+            return replayLine(key, line);
+        }
+        Set<Entry> entries = manifest != null ? manifest.get(key, line) : null;
+        if (entries != null) {
+            return entries;
         }
 
-        List<ConsolidatedEntry> consolidatedEntries = new ArrayList<>();
-        entries.forEach(e -> {
-            ConsolidatedEntry entry = new ConsolidatedEntry(e);
-            int size = consolidatedEntries.size() - 1;
-            if (size < 0 || !consolidatedEntries.get(size).equals(entry)) {
-                consolidatedEntries.add(entry);
-            } else {
-                consolidatedEntries.get(size).addText(entry.text());
+        entries = journal != null ? journal.get(key) : null;
+        if (entries == null) {
+            entries = memoryCache != null ? memoryCache.get(key) : null;
+            if (entries == null) {
+                entries = cache != null ? cache.get(key) : null;
+                if (entries == null) {
+                    entries = fetchLineWithRetries(line);
+                    if (cache != null) {
+                        try {
+                            cache.put(key, entries);
+                        } catch (IOException e) {
+                            // the entries are good nonetheless
+                            System.err.printf("failed to cache '%s': %s\n", line, e.getMessage());
+                        }
+                    }
+                    // a line found in a cache is found there again on resuming, hence is not worth a forced write
+                    if (journal != null) {
+                        journal.append(key, entries);
+                    }
+                }
+                if (memoryCache != null) {
+                    memoryCache.put(key, entries);
+                }
             }
-        });
-        return consolidatedEntries;
+        }
+        if (manifest != null) {
+            manifest.put(key, line, entries);
+        }
+        return entries;
+    }
+
+    /**
+     * Parses the entries of the given line from the pages archived for it.
+     *
+     * @param key  the key of the line
+     * @param line a term, optionally followed by its forms, a lemma or an expression
+     * @return a set of parsed {@link Entry} objects
+     * @throws IOException if the line is not archived or the archive cannot be read
+     */
+    private Set<Entry> replayLine(String key, String line) throws IOException {
+        long start = System.nanoTime();
+        ConcordancesParser parser = new ConcordancesParser(parserPool);
+        if (!archive.replay(key, parser)) {
+            throw new IOException("'" + line + "' is not archived");
+        }
+        Set<Entry> entries = parser.entries();
+        if (metrics != null) {
+            metrics.recordConcordances(System.nanoTime() - start, parser.parseNanos(), entries.size());
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the key under which the entries of the given line are cached, i.e., the line with its whitespace
+     * normalized, followed by the options of the query.
+     *
+     * @param line a term, optionally followed by its forms, a lemma or an expression
+     * @return the key of the line
+     */
+    String cacheKey(String line) {
+        return String.join(" ", line.trim().split("\\s+")) + "\n" + templates.key();
+    }
+
+    /**
+     * Runs the requests for the given line, which is searched again within a new session as long as the failures
+     * are retryable, up to {@code retries} times. The n-th retry waits for {@code retryBackoff * 2^(n-1)}, capped
+     * at {@link #MAX_RETRY_BACKOFF}, minus a random jitter of up to a half, so that concurrent lines which failed
+     * together do not retry together.
+     *
+     * @param line a term, optionally followed by its forms, a lemma or an expression
+     * @return a set of parsed {@link Entry} objects
+     * @throws CrawlException       if the line could not be searched
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private Set<Entry> fetchLineWithRetries(String line) throws CrawlException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return fetchLine(line);
+            } catch (CrawlException e) {
+                if (!e.isRetryable() || attempt > retries) {
+                    throw new CrawlException(line, attempt, e);
+                }
+                long backoff = Math.min(retryBackoff.toMillis() << Math.min(attempt - 1, 20),
+                        MAX_RETRY_BACKOFF.toMillis());
+                backoff -= ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                System.out.printf("retrying '%s' in %d ms: %s\n", line, backoff, e.getMessage());
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * Runs the 'term', 'forms', 'works' and 'concordances' requests for the given line.
+     * <p>
+     * If sessions are reused, the line is searched within the session of a line which has already been searched,
+     * if any, and the 'new search' request is skipped. Should the server refuse the reused session because it has
+     * expired, the line is searched again within a new session; any other failure is left to the retries. The
+     * {@code Index Thomisticus} answers a request within an expired session with 403 (Forbidden); a 401
+     * (Unauthorized), or a redirect to the 'new search' page, which the client does not follow, is taken as an
+     * expired session as well.
+     *
+     * @param line a term, optionally followed by its forms, a lemma or an expression
+     * @return a set of parsed {@link Entry} objects
+     * @throws CrawlException       if a request failed
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private Set<Entry> fetchLine(String line) throws CrawlException, InterruptedException {
+        if (idleSessions == null) {
+            return query(sendNewSearchRequest(), line);
+        }
+
+        Set<Entry> entries = null;
+        String sessionId = idleSessions.poll();
+        if (sessionId != null) {
+            try {
+                entries = query(sessionId, line);
+            } catch (CrawlException e) {
+                if (!isSessionExpired(e.statusCode())) {
+                    throw e;
+                }
+                sessionId = null;
+            }
+        }
+        if (sessionId == null) {
+            sessionId = sendNewSearchRequest();
+            entries = query(sessionId, line);
+        }
+        idleSessions.offer(sessionId);
+        return entries;
+    }
+
+    /**
+     * Runs the 'term', 'forms', 'works' and 'concordances' requests for the given line within the given session.
+     *
+     * @param sessionId the session's ID
+     * @param line      a term, optionally followed by its forms, a lemma or an expression
+     * @return a set of parsed {@link Entry} objects
+     * @throws CrawlException       if a request failed
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private Set<Entry> query(String sessionId, String line) throws CrawlException, InterruptedException {
+        ResponseArchive.Recorder recorder = archive != null ? archive.recorder() : null;
+        String term;
+        if (!line.startsWith("#") && !line.startsWith("\"")) {
+            String[] strings = line.split(" ");
+            term = strings[0];
+            sendTermRequest(sessionId, term);
+            sendFormsRequest(sessionId, strings);
+        } else {
+            term = line;
+        }
+
+        sendWorksRequest(sessionId, term);
+        Set<Entry> entries = sendConcordancesRequest(sessionId, term, recorder);
+        if (recorder != null) {
+            try {
+                archive.put(cacheKey(line), line, recorder);
+            } catch (IOException e) {
+                // the entries are good nonetheless
+                System.err.printf("failed to archive '%s': %s\n", line, e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Consolidates the given entries by place number.
+     *
+     * @param entries the entries ordered by case number
+     * @param order   the order of the consolidated entries
+     * @return a list of {@link ConsolidatedEntry} objects
+     */
+    static List<ConsolidatedEntry> consolidate(Collection<Entry> entries, EntryOrder order) {
+        Consolidator consolidator = new Consolidator();
+        consolidator.addAll(entries);
+        ListSink sink = new ListSink();
+        try {
+            consolidator.drain(order, sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sink.entries;
     }
 
     /**
      * Sends the 'new search' request.
      *
      * @return the new session's ID
-     * @throws IOException          if an I/O error occurs
+     * @throws CrawlException       if the request failed
      * @throws InterruptedException if the thread is interrupted
      */
-    protected String sendNewSearchRequest() throws IOException, InterruptedException {
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(INDEX_THOMISTICUS)
-                .header(CONTENT_TYPE, CONTENT_TYPE_FORM)
+    protected String sendNewSearchRequest() throws CrawlException, InterruptedException {
+        HttpRequest request = newRequest(null)
                 .POST(HttpRequest.BodyPublishers.noBody())
                 .build();
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            System.err.println("the 'new search' request returned " + response.statusCode());
-            System.exit(-1);
-        }
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString(),
+                CrawlException.Phase.NEW_SEARCH);
+        checkStatus(response, CrawlException.Phase.NEW_SEARCH);
         String header = response.headers().firstValue("Set-Cookie").orElse("");
-        return header.substring(0, header.indexOf(";"));
+        if (header.isEmpty()) {
+            throw new CrawlException(CrawlException.Phase.NEW_SEARCH, response.statusCode(),
+                    "the 'new search' request did not return a session");
+        }
+        int n = header.indexOf(";");
+        return n == -1 ? header : header.substring(0, n);
     }
 
     /**
@@ -205,25 +732,19 @@ public class Crawler {
      * @param sessionId the session's ID
      * @param term      the term
      * @throws IllegalArgumentException if sessionId is {@code null}
-     * @throws IOException              if an I/O error occurs
+     * @throws CrawlException          if the request failed
      * @throws InterruptedException     if the thread is interrupted
      */
-    protected void sendTermRequest(String sessionId, String term) throws IOException, InterruptedException {
+    protected void sendTermRequest(String sessionId, String term) throws CrawlException, InterruptedException {
         if (sessionId == null) {
             throw new IllegalArgumentException("sessionId cannot be null");
         }
-        String reqBody = String.format("text=%s&Form.option.terms=terms", term);
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(INDEX_THOMISTICUS)
-                .header(CONTENT_TYPE, CONTENT_TYPE_FORM)
-                .header(COOKIE, sessionId)
-                .POST(HttpRequest.BodyPublishers.ofString(reqBody))
+        HttpRequest request = newRequest(sessionId)
+                .POST(templates.term(term))
                 .build();
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            System.err.println("the 'ens' request returned " + response.statusCode());
-            System.exit(-1);
-        }
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString(),
+                CrawlException.Phase.TERM);
+        checkStatus(response, CrawlException.Phase.TERM);
     }
 
     /**
@@ -232,10 +753,10 @@ public class Crawler {
      * @param sessionId the session's ID
      * @param strings   the term and its forms, if any
      * @throws IllegalArgumentException if sessionId is {@code null}
-     * @throws IOException              if an I/O error occurs
+     * @throws CrawlException          if the request failed
      * @throws InterruptedException     if the thread is interrupted
      */
-    protected void sendFormsRequest(String sessionId, String[] strings) throws IOException, InterruptedException {
+    protected void sendFormsRequest(String sessionId, String[] strings) throws CrawlException, InterruptedException {
         if (sessionId == null) {
             throw new IllegalArgumentException("sessionId cannot be null");
         }
@@ -243,23 +764,12 @@ public class Crawler {
             // the term has no forms
             return;
         }
-        StringBuilder reqBody = new StringBuilder(String.format("text=%s&Form.option.works=works", strings[0]));
-        String format = "&terms%%5B0%%5D.listedLemmata%%5B0%%5D.listedFormae%%5B%s%%5D.selected=on";
-        for (int i = 1; i < strings.length; i++) {
-            reqBody.append(String.format(format, strings[i]));
-        }
-
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(INDEX_THOMISTICUS)
-                .header(CONTENT_TYPE, CONTENT_TYPE_FORM)
-                .header(COOKIE, sessionId)
-                .POST(HttpRequest.BodyPublishers.ofString(reqBody.toString()))
+        HttpRequest request = newRequest(sessionId)
+                .POST(templates.forms(strings))
                 .build();
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            System.err.println("the 'terms' request returned " + response.statusCode());
-            System.exit(-1);
-        }
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString(),
+                CrawlException.Phase.FORMS);
+        checkStatus(response, CrawlException.Phase.FORMS);
     }
 
     /**
@@ -268,69 +778,664 @@ public class Crawler {
      * @param sessionId the session's ID
      * @param term      the term
      * @throws IllegalArgumentException if sessionId is {@code null}
-     * @throws IOException              if an I/O error occurs
+     * @throws CrawlException          if the request failed
      * @throws InterruptedException     if the thread is interrupted
      */
-    protected void sendWorksRequest(String sessionId, String term) throws IOException, InterruptedException {
+    protected void sendWorksRequest(String sessionId, String term) throws CrawlException, InterruptedException {
         if (sessionId == null) {
             throw new IllegalArgumentException("sessionId cannot be null");
         }
-        StringBuilder reqBody = new StringBuilder(String.format("text=%s&Form.option.options=options", term));
-        String format = "&listedWorks%%5B%d%%5D.selected=on";
-        for (int i = FIRST_AUTHENTIC_WORK; i <= LAST_AUTHENTIC_WORK; i++) {
-            reqBody.append(String.format(format, i));
-        }
-
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(INDEX_THOMISTICUS)
-                .header(CONTENT_TYPE, CONTENT_TYPE_FORM)
-                .header(COOKIE, sessionId)
-                .POST(HttpRequest.BodyPublishers.ofString(reqBody.toString()))
+        HttpRequest request = newRequest(sessionId)
+                .POST(templates.works(term))
                 .build();
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            System.err.println("the 'works' request returned " + response.statusCode());
-            System.exit(-1);
-        }
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString(),
+                CrawlException.Phase.WORKS);
+        checkStatus(response, CrawlException.Phase.WORKS);
     }
 
     /**
      * Sends the 'concordances' request.
+     * <p>
+     * If the cases exceed {@link #PAGE_SIZE}, the remaining pages are requested within the same session as soon as
+     * the first page's header announces the total number of cases, so that they are downloaded while the first page
+     * is still being parsed. Up to {@link #MAX_PAGES_IN_FLIGHT} pages are requested at the same time. Unless
+     * {@link Builder#parallelParsing(boolean)} is off, the lines of the pages are parsed in chunks within the common
+     * fork-join pool, while the following lines are being read.
+     * <p>
+     * Should a page repeat the cases of another one, e.g., because the server ignored the page requested and
+     * returned the first page again, the request fails rather than returning a subset of the cases.
      *
      * @param sessionId the session's ID
      * @param term      the term
      * @return a set of parsed {@link Entry} objects
      * @throws IllegalArgumentException if sessionId is {@code null}
-     * @throws IOException              if an I/O error occurs
+     * @throws CrawlException          if the request failed
+     * @throws InterruptedException     if the thread is interrupted
+     */
+    protected Set<Entry> sendConcordancesRequest(String sessionId, String term)
+            throws CrawlException, InterruptedException {
+        return sendConcordancesRequest(sessionId, term, null);
+    }
+
+    /**
+     * Sends the 'concordances' request, passing the lines of the pages to the given recorder as they are parsed.
+     *
+     * @param sessionId the session's ID
+     * @param term      the term
+     * @param recorder  the recorder of the pages, or {@code null} if the pages are not archived
+     * @return a set of parsed {@link Entry} objects
+     * @throws IllegalArgumentException if sessionId is {@code null}
+     * @throws CrawlException           if the request failed
      * @throws InterruptedException     if the thread is interrupted
      */
-    protected Set<Entry> sendConcordancesRequest(String sessionId, String term) throws IOException, InterruptedException {
+    private Set<Entry> sendConcordancesRequest(String sessionId, String term, ResponseArchive.Recorder recorder)
+            throws CrawlException, InterruptedException {
         if (sessionId == null) {
             throw new IllegalArgumentException("sessionId cannot be null");
         }
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(INDEX_THOMISTICUS)
-                .header(CONTENT_TYPE, CONTENT_TYPE_FORM)
-                .header(COOKIE, sessionId)
-                .POST(HttpRequest.BodyPublishers.ofString("text=" + term + FORM_DATA_CONCORDANCES))
+        ConcordancesParser parser = new ConcordancesParser(parserPool);
+        Consumer<String> consumer = recorder != null ? parser.andThen(recorder) : parser;
+        Deque<CompletableFuture<HttpResponse<Stream<String>>>> inFlight = new ArrayDeque<>();
+        int pages = 0;
+        int nextPage = 2;
+        long nanos = 0;
+        try {
+            HttpResponse<Stream<String>> response = send(concordancesRequest(sessionId, term, 1),
+                    HttpResponse.BodyHandlers.ofLines(), CrawlException.Phase.CONCORDANCES);
+            try (Stream<String> body = response.body()) {
+                checkStatus(response, CrawlException.Phase.CONCORDANCES);
+                long start = System.nanoTime();
+                if (recorder != null) {
+                    recorder.page();
+                }
+                // the lines are parsed as they arrive, hence the page is never buffered as a whole
+                for (Iterator<String> lines = body.iterator(); lines.hasNext(); ) {
+                    consumer.accept(lines.next());
+                    if (pages == 0 && parser.cases() >= 0) {
+                        pages = Math.max(1, (parser.cases() + PAGE_SIZE - 1) / PAGE_SIZE);
+                        for (; nextPage <= pages && inFlight.size() < MAX_PAGES_IN_FLIGHT; nextPage++) {
+                            inFlight.add(sendConcordancesPageRequest(sessionId, term, nextPage));
+                        }
+                    }
+                }
+                nanos += System.nanoTime() - start;
+            }
+
+            while (!inFlight.isEmpty()) {
+                response = await(inFlight.poll());
+                if (nextPage <= pages) {
+                    inFlight.add(sendConcordancesPageRequest(sessionId, term, nextPage++));
+                }
+                try (Stream<String> body = response.body()) {
+                    checkStatus(response, CrawlException.Phase.CONCORDANCES);
+                    long start = System.nanoTime();
+                    if (recorder != null) {
+                        recorder.page();
+                    }
+                    body.forEach(consumer);
+                    nanos += System.nanoTime() - start;
+                }
+            }
+        } catch (CrawlException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CrawlException(CrawlException.Phase.CONCORDANCES, e);
+        } catch (UncheckedIOException e) {
+            // the connection failed while the page was being read
+            throw new CrawlException(CrawlException.Phase.CONCORDANCES, e.getCause());
+        } finally {
+            // release the connections of the pages which will not be read
+            inFlight.forEach(page -> page.thenAccept(r -> r.body().close()));
+        }
+
+        long start = System.nanoTime();
+        Set<Entry> entries = parser.entries();
+        nanos += System.nanoTime() - start;
+        if (parser.duplicates() > 0) {
+            // not retryable, since the server would return the same pages again
+            throw new CrawlException(CrawlException.Phase.CONCORDANCES, 200, "the 'concordances' pages of '" + term +
+                    "' repeated " + parser.duplicates() + " cases, hence the server ignored the page requested");
+        }
+        if (parser.found() != null) {
+            System.out.println(parser.found() + " cases for " + term);
+        }
+        if (metrics != null) {
+            metrics.recordConcordances(nanos, parser.parseNanos(), entries.size());
+        }
+        return entries;
+    }
+
+    /**
+     * Asynchronously sends the 'concordances' request of the given page.
+     *
+     * @param sessionId the session's ID
+     * @param term      the term
+     * @param page      the page, starting from 1
+     * @return the response, whose lines are read as they arrive
+     * @throws InterruptedException if the thread is interrupted while waiting for the limiter
+     */
+    private CompletableFuture<HttpResponse<Stream<String>>> sendConcordancesPageRequest(String sessionId, String term,
+                                                                                        int page)
+            throws InterruptedException {
+        HttpRequest request = concordancesRequest(sessionId, term, page);
+        if (limiter == null && metrics == null) {
+            return client.sendAsync(request, HttpResponse.BodyHandlers.ofLines());
+        }
+        long start = limiter != null ? limiter.acquire() : System.nanoTime();
+        HttpResponse.BodyHandler<Stream<String>> handler = HttpResponse.BodyHandlers.ofLines();
+        return client.sendAsync(request, metrics != null ? metrics.countBytes(handler) : handler)
+                .whenComplete((response, e) -> {
+                    int statusCode = response != null ? response.statusCode()
+                            : e instanceof CancellationException ? AdaptiveLimiter.ABANDONED : CrawlException.NO_STATUS;
+                    if (metrics != null && statusCode != AdaptiveLimiter.ABANDONED) {
+                        metrics.recordRequest(CrawlException.Phase.CONCORDANCES, System.nanoTime() - start);
+                    }
+                    if (limiter != null) {
+                        limiter.release(start, statusCode);
+                    }
+                });
+    }
+
+    /**
+     * Returns the 'concordances' request of the given page.
+     *
+     * @param sessionId the session's ID
+     * @param term      the term
+     * @param page      the page, starting from 1
+     * @return the request
+     */
+    private HttpRequest concordancesRequest(String sessionId, String term, int page) {
+        return newRequest(sessionId)
+                .POST(templates.concordances(term, page))
                 .build();
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Returns a new request to the endpoint within the given session, copied from an immutable template which
+     * holds the endpoint, the timeout and the content type.
+     *
+     * @param sessionId the session's ID, or {@code null} if the request opens a new session
+     * @return a new request builder
+     */
+    private HttpRequest.Builder newRequest(String sessionId) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(requestTemplate, (name, value) -> true);
+        return sessionId == null ? builder : builder.header(COOKIE, sessionId);
+    }
+
+    /**
+     * Sends the given request, once the limiter, if any, lets it go.
+     *
+     * @param request the request
+     * @param handler the handler of the response's body
+     * @param phase   the request's phase
+     * @param <T>     the type of the response's body
+     * @return the response
+     * @throws CrawlException       if the request failed with an I/O error
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                     CrawlException.Phase phase) throws CrawlException, InterruptedException {
+        if (limiter == null && metrics == null) {
+            try {
+                return client.send(request, handler);
+            } catch (IOException e) {
+                throw new CrawlException(phase, e);
+            }
+        }
+
+        long start = limiter != null ? limiter.acquire() : System.nanoTime();
+        int statusCode = AdaptiveLimiter.ABANDONED;
+        try {
+            HttpResponse<T> response = client.send(request, metrics != null ? metrics.countBytes(handler) : handler);
+            statusCode = response.statusCode();
+            return response;
+        } catch (IOException e) {
+            statusCode = CrawlException.NO_STATUS;
+            throw new CrawlException(phase, e);
+        } finally {
+            if (metrics != null && statusCode != AdaptiveLimiter.ABANDONED) {
+                metrics.recordRequest(phase, System.nanoTime() - start);
+            }
+            if (limiter != null) {
+                limiter.release(start, statusCode);
+            }
+        }
+    }
+
+    /**
+     * Checks that the given response is successful.
+     *
+     * @param response the response
+     * @param phase    the request's phase
+     * @throws CrawlException if the response's status code is not 200
+     */
+    /**
+     * Returns whether the given status code is the answer to a request within an expired session.
+     *
+     * @param statusCode the status code
+     * @return {@code true} if the status code is 401, 403 or a redirect
+     */
+    private static boolean isSessionExpired(int statusCode) {
+        return statusCode == 401 || statusCode == 403 || statusCode >= 300 && statusCode < 400;
+    }
+
+    private static void checkStatus(HttpResponse<?> response, CrawlException.Phase phase) throws CrawlException {
         if (response.statusCode() != 200) {
-            System.err.println("the 'concordances' request returned " + response.statusCode());
-            System.exit(-1);
+            throw new CrawlException(phase, response.statusCode(),
+                    "the '" + phase + "' request returned " + response.statusCode());
         }
+    }
 
-        String body = response.body();
-        int m = body.indexOf("Found");
-        int n = body.indexOf(" cases in ");
-        System.out.println(body.substring(m, n) + " cases for " + term);
+    /**
+     * Waits for the given future to complete.
+     *
+     * @param future the future
+     * @param <T>    the type of the future's result
+     * @return the future's result
+     * @throws IOException          if the future failed with an I/O error
+     * @throws InterruptedException if the thread is interrupted
+     */
+    static <T> T await(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioe) {
+                throw ioe;
+            }
+            if (cause instanceof InterruptedException ie) {
+                throw ie;
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException(cause);
+        }
+    }
 
-        Set<Entry> entries = new TreeSet<>();
-        Pattern.compile("<p title=.*")
-                .matcher(body)
-                .results()
-                .map(MatchResult::group).
-                forEach(line -> entries.add(Entry.parseEntry(line)));
-        return entries;
+    /**
+     * Collects the consolidated entries in a list.
+     */
+    private static final class ListSink implements EntrySink {
+
+        private final List<ConsolidatedEntry> entries = new ArrayList<>();
+
+        @Override
+        public void accept(ConsolidatedEntry entry) {
+            entries.add(entry);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Builds a {@link Crawler}.
+     */
+    public static class Builder {
+
+        private final List<String> lines;
+        private URI endpoint = INDEX_THOMISTICUS;
+        private int maxConcurrency = 1;
+        private ResponseCache cache;
+        private MemoryCache memoryCache;
+        private ResponseArchive archive;
+        private boolean offline;
+        private CrawlManifest manifest;
+        private CrawlJournal journal;
+        private int retries = 3;
+        private Duration retryBackoff = Duration.ofSeconds(1);
+        private boolean reuseSessions;
+        private boolean parallelParsing = true;
+        private boolean adaptiveConcurrency;
+        private CrawlMetrics metrics;
+        private double maxRequestsPerSecond;
+        private HttpClient client;
+        private HttpClient.Version version = HttpClient.Version.HTTP_2;
+        private Duration connectTimeout = Duration.ofSeconds(10);
+        private Duration requestTimeout = Duration.ofMinutes(5);
+        private int firstWork = FIRST_AUTHENTIC_WORK;
+        private int lastWork = LAST_AUTHENTIC_WORK;
+        private String concordanceOptions = DEFAULT_CONCORDANCE_OPTIONS;
+        private Executor executor;
+        private EntryOrder order = EntryOrder.CASE;
+
+        private Builder(List<String> lines) {
+            if (lines == null) {
+                throw new IllegalArgumentException("lines cannot be null");
+            }
+            this.lines = lines;
+        }
+
+        /**
+         * Sets the endpoint of the {@code Index Thomisticus}.
+         *
+         * @param endpoint the endpoint; {@link #INDEX_THOMISTICUS} by default
+         * @return this builder
+         * @throws IllegalArgumentException if endpoint is {@code null}
+         */
+        public Builder endpoint(URI endpoint) {
+            if (endpoint == null) {
+                throw new IllegalArgumentException("endpoint cannot be null");
+            }
+            this.endpoint = endpoint;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of lines searched at the same time, each one on a virtual thread.
+         *
+         * @param maxConcurrency the maximum number of sessions in flight; {@code 1}, the default, searches the
+         *                       lines sequentially
+         * @return this builder
+         * @throws IllegalArgumentException if maxConcurrency is not strictly positive
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency <= 0) {
+                throw new IllegalArgumentException("maxConcurrency must be strictly positive");
+            }
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Sets the cache of the lines' entries.
+         *
+         * @param cache the cache, or {@code null}, the default, to always query the {@code Index Thomisticus}
+         * @return this builder
+         */
+        public Builder cache(ResponseCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Sets the in-memory cache of the lines' entries, which is looked up before the cache.
+         *
+         * @param memoryCache the cache, or {@code null}, the default, not to keep the entries in memory
+         * @return this builder
+         */
+        public Builder memoryCache(MemoryCache memoryCache) {
+            this.memoryCache = memoryCache;
+            return this;
+        }
+
+        /**
+         * Sets the archive of the raw 'concordances' pages, to which the pages of every line searched are added.
+         *
+         * @param archive the archive, or {@code null}, the default, not to archive the pages
+         * @return this builder
+         */
+        public Builder archive(ResponseArchive archive) {
+            this.archive = archive;
+            return this;
+        }
+
+        /**
+         * Sets whether the entries of every line are parsed from the pages in the archive, without querying the
+         * {@code Index Thomisticus}, nor reading the manifest, the journal or the caches.
+         *
+         * @param offline {@code true} to replay the archive; {@code false} by default
+         * @return this builder
+         */
+        public Builder offline(boolean offline) {
+            this.offline = offline;
+            return this;
+        }
+
+        /**
+         * Sets the manifest of the lines crawled by a previous run, whose entries are read from the manifest's
+         * segments rather than crawled again. The lines crawled by this run are added to the manifest.
+         *
+         * @param manifest the manifest, or {@code null}, the default, to crawl every line
+         * @return this builder
+         */
+        public Builder manifest(CrawlManifest manifest) {
+            this.manifest = manifest;
+            return this;
+        }
+
+        /**
+         * Sets the journal to which the entries of every line searched are checkpointed, so that a crawl which was
+         * interrupted can be resumed: the lines held by the journal are not searched again. The lines found in a
+         * cache are not checkpointed, since they are found there again.
+         *
+         * @param journal the journal, or {@code null}, the default, not to checkpoint the lines
+         * @return this builder
+         */
+        public Builder journal(CrawlJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * Sets how many times a line is searched again should it fail with a retryable {@link CrawlException}.
+         *
+         * @param retries the number of retries; 3 by default
+         * @return this builder
+         * @throws IllegalArgumentException if retries is negative
+         */
+        public Builder retries(int retries) {
+            if (retries < 0) {
+                throw new IllegalArgumentException("retries cannot be negative");
+            }
+            this.retries = retries;
+            return this;
+        }
+
+        /**
+         * Sets the time to wait before the first retry of a line, which doubles at every further retry.
+         *
+         * @param retryBackoff the backoff; 1 second by default
+         * @return this builder
+         * @throws IllegalArgumentException if retryBackoff is not strictly positive
+         */
+        public Builder retryBackoff(Duration retryBackoff) {
+            this.retryBackoff = positive(retryBackoff, "retryBackoff");
+            return this;
+        }
+
+        /**
+         * Sets whether the number of requests in flight adapts to the latency of the responses: it starts from 1,
+         * grows as long as the latency holds steady, up to {@link #maxConcurrency(int)}, and backs off as soon as
+         * the responses slow down or the server fails.
+         *
+         * @param adaptiveConcurrency {@code true} to adapt the requests in flight; {@code false} by default
+         * @return this builder
+         */
+        public Builder adaptiveConcurrency(boolean adaptiveConcurrency) {
+            this.adaptiveConcurrency = adaptiveConcurrency;
+            return this;
+        }
+
+        /**
+         * Sets the maximum rate of the requests, which are spaced accordingly.
+         *
+         * @param maxRequestsPerSecond the maximum number of requests per second, or {@code 0}, the default, for no
+         *                             limit
+         * @return this builder
+         * @throws IllegalArgumentException if maxRequestsPerSecond is negative
+         */
+        public Builder maxRequestsPerSecond(double maxRequestsPerSecond) {
+            if (maxRequestsPerSecond < 0 || Double.isNaN(maxRequestsPerSecond)) {
+                throw new IllegalArgumentException("maxRequestsPerSecond cannot be negative");
+            }
+            this.maxRequestsPerSecond = maxRequestsPerSecond;
+            return this;
+        }
+
+        /**
+         * Sets the metrics in which the requests, the parsing, the consolidation and the writing of the entries
+         * are recorded.
+         *
+         * @param metrics the metrics, or {@code null}, the default, not to record them
+         * @return this builder
+         */
+        public Builder metrics(CrawlMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Sets the range of the works to be searched.
+         *
+         * @param firstWork the index of the first work; {@link #FIRST_AUTHENTIC_WORK} by default
+         * @param lastWork  the index of the last work, inclusive; {@link #LAST_AUTHENTIC_WORK} by default
+         * @return this builder
+         * @throws IllegalArgumentException if firstWork is negative, or if lastWork is lower than firstWork
+         */
+        public Builder works(int firstWork, int lastWork) {
+            if (firstWork < 0) {
+                throw new IllegalArgumentException("firstWork cannot be negative");
+            }
+            if (lastWork < firstWork) {
+                throw new IllegalArgumentException("lastWork cannot be lower than firstWork");
+            }
+            this.firstWork = firstWork;
+            this.lastWork = lastWork;
+            return this;
+        }
+
+        /**
+         * Sets the options of the 'concordances' request, as URL-encoded form data, e.g.,
+         * {@code &exhaustive=false&asyndetonAll=true}. The page size and the page are set by the crawler.
+         *
+         * @param concordanceOptions the options; {@link #DEFAULT_CONCORDANCE_OPTIONS} by default
+         * @return this builder
+         * @throws IllegalArgumentException if concordanceOptions is {@code null}
+         */
+        public Builder concordanceOptions(String concordanceOptions) {
+            if (concordanceOptions == null) {
+                throw new IllegalArgumentException("concordanceOptions cannot be null");
+            }
+            this.concordanceOptions = concordanceOptions;
+            return this;
+        }
+
+        /**
+         * Sets whether a line is searched within the session of a line which has already been searched, rather
+         * than within a new session. The sessions are kept in a pool, so that each one is used by a single line at
+         * a time.
+         *
+         * @param reuseSessions {@code true} to reuse the sessions; {@code false} by default
+         * @return this builder
+         */
+        public Builder reuseSessions(boolean reuseSessions) {
+            this.reuseSessions = reuseSessions;
+            return this;
+        }
+
+        /**
+         * Sets whether the lines of a concordances page are parsed in chunks on all cores, within the common
+         * fork-join pool, rather than one after another as they arrive. The pages are never parsed in parallel on a
+         * single core.
+         *
+         * @param parallelParsing {@code true} to parse the pages in parallel; {@code true} by default
+         * @return this builder
+         */
+        public Builder parallelParsing(boolean parallelParsing) {
+            this.parallelParsing = parallelParsing;
+            return this;
+        }
+
+        /**
+         * Sets the HTTP client, e.g., to share it among several crawlers. The client's settings take precedence
+         * over {@link #version(HttpClient.Version)}, {@link #connectTimeout(Duration)} and
+         * {@link #executor(Executor)}. The client should not follow redirects, so that a redirect to the 'new search'
+         * page is taken as an expired session.
+         *
+         * @param client the client, or {@code null}, the default, to create a client of its own
+         * @return this builder
+         */
+        public Builder client(HttpClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * Sets the preferred HTTP version, which falls back to HTTP/1.1 if the server does not support HTTP/2.
+         *
+         * @param version the version; {@link HttpClient.Version#HTTP_2} by default
+         * @return this builder
+         * @throws IllegalArgumentException if version is {@code null}
+         */
+        public Builder version(HttpClient.Version version) {
+            if (version == null) {
+                throw new IllegalArgumentException("version cannot be null");
+            }
+            this.version = version;
+            return this;
+        }
+
+        /**
+         * Sets the timeout of a connection to the endpoint.
+         *
+         * @param connectTimeout the timeout; 10 seconds by default
+         * @return this builder
+         * @throws IllegalArgumentException if connectTimeout is not strictly positive
+         */
+        public Builder connectTimeout(Duration connectTimeout) {
+            this.connectTimeout = positive(connectTimeout, "connectTimeout");
+            return this;
+        }
+
+        /**
+         * Sets the time within which the response's headers must be received.
+         *
+         * @param requestTimeout the timeout; 5 minutes by default
+         * @return this builder
+         * @throws IllegalArgumentException if requestTimeout is not strictly positive
+         */
+        public Builder requestTimeout(Duration requestTimeout) {
+            this.requestTimeout = positive(requestTimeout, "requestTimeout");
+            return this;
+        }
+
+        /**
+         * Sets the executor of the HTTP client's asynchronous tasks.
+         *
+         * @param executor the executor, or {@code null}, the default, for an executor shared by the crawlers, which
+         *                 runs each task on a virtual thread
+         * @return this builder
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets the order of the consolidated entries.
+         *
+         * @param order the order; {@link EntryOrder#CASE} by default
+         * @return this builder
+         * @throws IllegalArgumentException if order is {@code null}
+         */
+        public Builder order(EntryOrder order) {
+            if (order == null) {
+                throw new IllegalArgumentException("order cannot be null");
+            }
+            this.order = order;
+            return this;
+        }
+
+        private static Duration positive(Duration duration, String name) {
+            if (duration == null || duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException(name + " must be strictly positive");
+            }
+            return duration;
+        }
+
+        /**
+         * Returns a new {@link Crawler}.
+         *
+         * @return a new {@link Crawler}
+         */
+        public Crawler build() {
+            if (offline && archive == null) {
+                throw new IllegalArgumentException("an offline crawler needs an archive");
+            }
+            return new Crawler(this);
+        }
     }
 }
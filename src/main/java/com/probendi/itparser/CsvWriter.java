@@ -1,9 +1,7 @@
 package com.probendi.itparser;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Collection;
+import java.nio.file.Path;
 
 /**
  * Writes entries to a CSV file.
@@ -15,18 +13,56 @@ import java.util.Collection;
  */
 public class CsvWriter implements Writer {
 
-    private static final String HEADER = "Work\tPosition\tText\n";
+    static final String HEADER = "Work\tPosition\tText\n";
+
+    private final OutputMode mode;
+
+    /**
+     * Creates a new {@code CsvWriter} which writes through a {@link java.nio.channels.FileChannel}.
+     */
+    public CsvWriter() {
+        this(OutputMode.CHANNEL);
+    }
+
+    /**
+     * Creates a new {@code CsvWriter} which writes in the given mode.
+     *
+     * @param mode the output mode
+     * @throws IllegalArgumentException if mode is {@code null}
+     * @since 3.1
+     */
+    public CsvWriter(OutputMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("mode cannot be null");
+        }
+        this.mode = mode;
+    }
 
     @Override
-    public void write(String file, Collection<ConsolidatedEntry> entries) throws IOException {
-        String name = validate(file, entries);
-        try (final FileWriter fw = new FileWriter(name);
-             final BufferedWriter bw = new BufferedWriter(fw)) {
-            bw.write(HEADER);
-            for (ConsolidatedEntry entry : entries) {
-                bw.write(entry.toCsv());
+    public EntrySink open(String file) throws IOException {
+        final String name = validate(file);
+        final ChannelOutput out = new ChannelOutput(Path.of(name), mode);
+        out.append(HEADER);
+        return new EntrySink() {
+            private final EntryEncoder encoder = new EntryEncoder();
+            private int count;
+
+            @Override
+            public void accept(ConsolidatedEntry entry) throws IOException {
+                encoder.appendCsv(entry, out);
+                count++;
             }
-        }
-        System.out.printf("Written %d entries to %s\n", entries.size(), name);
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+                System.out.printf("Written %d entries to %s\n", count, name);
+            }
+
+            @Override
+            public void abort() throws IOException {
+                out.abort();
+            }
+        };
     }
 }
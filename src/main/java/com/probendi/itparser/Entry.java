@@ -1,6 +1,5 @@
 package com.probendi.itparser;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 /**
@@ -24,7 +23,22 @@ public record Entry(int caseNumber,
                     String text) implements Comparable<Entry> {
 
     private static final String CASE = "Case ";
-    private static final String COMMA = ",";
+    private static final String[] ENTITIES = {
+            "nbsp", " ",
+            "amp", "&",
+            "lt", "<",
+            "gt", ">",
+            "quot", "\"",
+            "apos", "'",
+            "aelig", "\u00e6",
+            "AElig", "\u00c6",
+            "oelig", "\u0153",
+            "OElig", "\u0152",
+            "laquo", "\u00ab",
+            "raquo", "\u00bb",
+            "middot", "\u00b7",
+    };
+    private static final char COMMA = ',';
     private static final String DOT = ".";
     private static final String NBSP = "&nbsp;";
     private static final String PLACE = "Place ";
@@ -100,41 +114,151 @@ public record Entry(int caseNumber,
      *
      * @param line the line to be parsed
      * @return a new {@link Entry}
-     * @throws IllegalArgumentException if line is {@code null}
+     * @throws IllegalArgumentException if line is {@code null} or malformed
      */
     public static Entry parseEntry(String line) {
         if (line == null) {
             throw new IllegalArgumentException("line cannot be null");
         }
+        return parseEntry(line, 0);
+    }
+
+    /**
+     * Parses the given line starting at the given index.
+     * <p>
+     * The line is scanned once: the case number, the place number, the position and the work are read in place,
+     * whereas the text is copied while its tags are stripped and its HTML entities are decoded.
+     *
+     * @param line the line to be parsed
+     * @param from the index at which the entry starts
+     * @return a new {@link Entry}
+     * @throws IllegalArgumentException if line is malformed
+     */
+    static Entry parseEntry(String line, int from) {
         // get the case number
-        line = line.substring(line.indexOf(CASE) + CASE.length());
-        final int caseNumber = Integer.parseInt(line.substring(0, line.indexOf(DOT)));
+        int i = indexAfter(line, CASE, from);
+        int j = indexOf(line, DOT, i);
+        final int caseNumber = parseInt(line, i, j);
 
         // get the place number
-        line = line.substring(line.indexOf(PLACE) + PLACE.length());
-        final int placeNumber = Integer.parseInt(line.substring(0, line.indexOf(DOT)));
+        i = indexAfter(line, PLACE, j);
+        j = indexOf(line, DOT, i);
+        final int placeNumber = parseInt(line, i, j);
 
         // get the work and the position within it
-        line = line.substring(line.indexOf(SPAN) + SPAN.length());
-        final String position = line.substring(0, line.indexOf(NBSP));
-        int n = position.indexOf(COMMA);
-        String work = n == -1 ? position : position.substring(0, n);
+        i = indexAfter(line, SPAN, j);
+        j = indexOf(line, NBSP, i);
+        final String position = line.substring(i, j);
+        int n = line.indexOf(COMMA, i);
+        final String work = n == -1 || n >= j ? position : line.substring(i, n);
 
         // get the text
-        line = line.substring(position.length() + NBSP.length());
-        final StringBuilder sb = new StringBuilder();
+        final String text = decodeText(line, j + NBSP.length());
+
+        return new Entry(caseNumber, placeNumber, work, position, text);
+    }
+
+    /**
+     * Returns the index following the first occurrence of the given marker at or after {@code from}.
+     */
+    private static int indexAfter(String line, String marker, int from) {
+        return indexOf(line, marker, from) + marker.length();
+    }
+
+    /**
+     * Returns the index of the first occurrence of the given marker at or after {@code from}.
+     */
+    private static int indexOf(String line, String marker, int from) {
+        int n = line.indexOf(marker, from);
+        if (n == -1) {
+            throw new IllegalArgumentException("malformed line: '" + marker + "' not found");
+        }
+        return n;
+    }
+
+    /**
+     * Parses the non-negative decimal integer between {@code begin} (inclusive) and {@code end} (exclusive).
+     */
+    private static int parseInt(String line, int begin, int end) {
+        if (begin == end) {
+            throw new IllegalArgumentException("malformed line: missing number");
+        }
+        int value = 0;
+        for (int i = begin; i < end; i++) {
+            int digit = line.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Integer.MAX_VALUE - digit) / 10) {
+                throw new IllegalArgumentException("malformed line: invalid number");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the text starting at the given index with its tags stripped and its HTML entities decoded.
+     * {@code &nbsp;} is decoded as a plain space.
+     */
+    private static String decodeText(String line, int from) {
+        final int length = line.length();
+        final StringBuilder sb = new StringBuilder(length - from);
         boolean add = true;
-        for (byte b : line.getBytes(StandardCharsets.UTF_8)) {
-            if (b == '<') {
+        for (int i = from; i < length; i++) {
+            char c = line.charAt(i);
+            if (c == '<') {
                 add = false;
-            } else if (b == '>') {
+            } else if (c == '>') {
                 add = true;
             } else if (add) {
-                sb.append((char) b);
+                if (c == '&') {
+                    int end = decodeEntity(line, i, sb);
+                    if (end != -1) {
+                        i = end;
+                        continue;
+                    }
+                }
+                sb.append(c);
             }
         }
-        final String text = sb.toString().replace(NBSP, " ");
+        return sb.toString();
+    }
 
-        return new Entry(caseNumber, placeNumber, work, position, text);
+    /**
+     * Decodes the HTML entity starting at the given index, if any.
+     *
+     * @return the index of the entity's semicolon, or {@code -1} if there is no entity to be decoded
+     */
+    private static int decodeEntity(String line, int from, StringBuilder sb) {
+        int i = from + 1;
+        if (i < line.length() && line.charAt(i) == '#') {
+            int radix = 10;
+            i++;
+            if (i < line.length() && (line.charAt(i) == 'x' || line.charAt(i) == 'X')) {
+                radix = 16;
+                i++;
+            }
+            int codePoint = 0;
+            int begin = i;
+            for (; i < line.length() && i - begin < 7; i++) {
+                int digit = Character.digit(line.charAt(i), radix);
+                if (digit == -1) {
+                    break;
+                }
+                codePoint = codePoint * radix + digit;
+            }
+            if (i == begin || i == line.length() || line.charAt(i) != ';' || !Character.isValidCodePoint(codePoint)) {
+                return -1;
+            }
+            sb.appendCodePoint(codePoint);
+            return i;
+        }
+        for (int k = 0; k < ENTITIES.length; k += 2) {
+            String name = ENTITIES[k];
+            int end = i + name.length();
+            if (end < line.length() && line.charAt(end) == ';' && line.regionMatches(i, name, 0, name.length())) {
+                sb.append(ENTITIES[k + 1]);
+                return end;
+            }
+        }
+        return -1;
     }
 }
@@ -0,0 +1,131 @@
+package com.probendi.itparser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Encodes entries in a compact binary form.
+ * <p>
+ * Works are dictionary-encoded, i.e., every work is written once and then referred to by its index, and a
+ * position equal to the previous entry's one is not written again. Strings are written as UTF-8 bytes prefixed
+ * by their length.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+final class EntryCodec {
+
+    private static final int MAX_LENGTH = 1 << 26;
+    private static final int NEW_WORK = -1;
+    private static final int SAME_POSITION = -1;
+
+    private EntryCodec() {
+    }
+
+    /**
+     * Writes the given entries.
+     *
+     * @param out     the output
+     * @param entries the entries to be written
+     * @throws IOException if an I/O error occurs
+     */
+    static void write(DataOutput out, Collection<Entry> entries) throws IOException {
+        Map<String, Integer> works = new HashMap<>();
+        String previousPosition = null;
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            out.writeInt(entry.caseNumber());
+            out.writeInt(entry.placeNumber());
+
+            Integer work = works.get(entry.work());
+            if (work == null) {
+                works.put(entry.work(), works.size());
+                out.writeInt(NEW_WORK);
+                writeString(out, entry.work());
+            } else {
+                out.writeInt(work);
+            }
+
+            if (entry.position().equals(previousPosition)) {
+                out.writeInt(SAME_POSITION);
+            } else {
+                writeString(out, entry.position());
+                previousPosition = entry.position();
+            }
+            writeString(out, entry.text());
+        }
+    }
+
+    /**
+     * Reads entries written by {@link #write(DataOutput, Collection)}.
+     *
+     * @param in the input
+     * @return the entries, ordered by case number
+     * @throws IOException if an I/O error occurs or if the input is malformed
+     */
+    static Set<Entry> read(DataInput in) throws IOException {
+        List<String> works = new ArrayList<>();
+        String previousPosition = null;
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("malformed entries: negative size");
+        }
+        Set<Entry> entries = new TreeSet<>();
+        for (int i = 0; i < size; i++) {
+            int caseNumber = in.readInt();
+            int placeNumber = in.readInt();
+
+            int n = in.readInt();
+            String work;
+            if (n == NEW_WORK) {
+                work = readString(in, in.readInt());
+                works.add(work);
+            } else if (n >= 0 && n < works.size()) {
+                work = works.get(n);
+            } else {
+                throw new IOException("malformed entries: unknown work " + n);
+            }
+
+            n = in.readInt();
+            String position = n == SAME_POSITION ? previousPosition : readString(in, n);
+            if (position == null) {
+                throw new IOException("malformed entries: missing position");
+            }
+            previousPosition = position;
+
+            String text = readString(in, in.readInt());
+            try {
+                entries.add(new Entry(caseNumber, placeNumber, work, position, text));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("malformed entries: " + e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInput in, int length) throws IOException {
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("malformed entries: invalid length " + length);
+        }
+        byte[] b = new byte[length];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,127 @@
+package com.probendi.itparser;
+
+import java.io.IOException;
+
+/**
+ * Encodes consolidated entries as CSV or JSON rows, appending them straight to an {@link Appendable}.
+ * <p>
+ * The CSV rows are tab-separated: a field holding a tab, a line break or a double quote is enclosed in double
+ * quotes, and its double quotes are doubled. The JSON strings are escaped as RFC 8259 requires.
+ * <p>
+ * An encoder reuses its buffer from row to row, hence it allocates nothing once the buffer has grown to the size
+ * of the longest text. An encoder is not thread-safe.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+final class EntryEncoder {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder text = new StringBuilder(256);
+
+    /**
+     * Appends the given entry as a CSV row, terminated by a line feed.
+     *
+     * @param entry the entry
+     * @param out   the output
+     * @throws IOException if an I/O error occurs
+     */
+    void appendCsv(ConsolidatedEntry entry, Appendable out) throws IOException {
+        appendCsvField(entry.work(), out);
+        out.append('\t');
+        appendCsvField(entry.position(), out);
+        out.append('\t');
+        appendCsvField(text(entry), out);
+        out.append('\n');
+    }
+
+    /**
+     * Appends the given entry as a JSON object.
+     *
+     * @param entry the entry
+     * @param out   the output
+     * @throws IOException if an I/O error occurs
+     */
+    void appendJson(ConsolidatedEntry entry, Appendable out) throws IOException {
+        out.append("{\"work\":\"");
+        appendJsonString(entry.work(), out);
+        out.append("\",\"position\":\"");
+        appendJsonString(entry.position(), out);
+        out.append("\",\"text\":\"");
+        appendJsonString(text(entry), out);
+        out.append("\"}");
+    }
+
+    /**
+     * Appends the given field, enclosed in double quotes if it holds a tab, a line break or a double quote.
+     *
+     * @param s   the field
+     * @param out the output
+     * @throws IOException if an I/O error occurs
+     */
+    static void appendCsvField(CharSequence s, Appendable out) throws IOException {
+        int n = s.length();
+        int i = 0;
+        while (i < n && !needsQuotes(s.charAt(i))) {
+            i++;
+        }
+        if (i == n) {
+            out.append(s);
+            return;
+        }
+
+        out.append('"');
+        int start = 0;
+        for (; i < n; i++) {
+            if (s.charAt(i) == '"') {
+                out.append(s, start, i + 1).append('"');
+                start = i + 1;
+            }
+        }
+        out.append(s, start, n).append('"');
+    }
+
+    /**
+     * Appends the given string, escaped as the content of a JSON string.
+     *
+     * @param s   the string
+     * @param out the output
+     * @throws IOException if an I/O error occurs
+     */
+    static void appendJsonString(CharSequence s, Appendable out) throws IOException {
+        int start = 0;
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.append(s, start, i);
+            start = i + 1;
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\b' -> out.append("\\b");
+                case '\f' -> out.append("\\f");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+        }
+        out.append(s, start, n);
+    }
+
+    private static boolean needsQuotes(char c) {
+        return c == '\t' || c == '\n' || c == '\r' || c == '"';
+    }
+
+    private CharSequence text(ConsolidatedEntry entry) {
+        text.setLength(0);
+        entry.appendText(text);
+        return text;
+    }
+}
@@ -0,0 +1,28 @@
+package com.probendi.itparser;
+
+/**
+ * The order in which consolidated entries are written.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public enum EntryOrder {
+
+    /**
+     * By the lowest case number of each place; places whose lowest case numbers are equal are kept in the order of
+     * the lines in which they were found.
+     */
+    CASE,
+
+    /**
+     * By place number.
+     */
+    PLACE,
+
+    /**
+     * By work and, within a work, by place number.
+     */
+    WORK
+}
@@ -0,0 +1,94 @@
+package com.probendi.itparser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives consolidated entries one at a time, e.g., to write them to a file as soon as they are available.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public interface EntrySink extends Closeable {
+
+    /**
+     * Receives the given entry.
+     *
+     * @param entry the entry
+     * @throws IOException if an I/O error occurs
+     */
+    void accept(ConsolidatedEntry entry) throws IOException;
+
+    /**
+     * Closes this sink after a failure, discarding whatever it has received if it can, e.g., by leaving the target
+     * file untouched. The sink closes itself by default.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    default void abort() throws IOException {
+        close();
+    }
+
+    /**
+     * Returns a sink which passes every entry on to each of the given sinks, and closes, or aborts, all of them
+     * when it is closed, or aborted.
+     *
+     * @param sinks the sinks
+     * @return a new sink
+     * @throws IllegalArgumentException if sinks is {@code null} or contains {@code null}
+     */
+    static EntrySink tee(EntrySink... sinks) {
+        if (sinks == null) {
+            throw new IllegalArgumentException("sinks cannot be null");
+        }
+        for (EntrySink sink : sinks) {
+            if (sink == null) {
+                throw new IllegalArgumentException("sinks cannot contain null");
+            }
+        }
+        final List<EntrySink> list = List.of(sinks);
+        return new EntrySink() {
+            @Override
+            public void accept(ConsolidatedEntry entry) throws IOException {
+                for (EntrySink sink : list) {
+                    sink.accept(entry);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                closeAll(false);
+            }
+
+            @Override
+            public void abort() throws IOException {
+                closeAll(true);
+            }
+
+            private void closeAll(boolean abort) throws IOException {
+                IOException exception = null;
+                for (EntrySink sink : list) {
+                    try {
+                        if (abort) {
+                            sink.abort();
+                        } else {
+                            sink.close();
+                        }
+                    } catch (IOException e) {
+                        if (exception == null) {
+                            exception = e;
+                        } else {
+                            exception.addSuppressed(e);
+                        }
+                    }
+                }
+                if (exception != null) {
+                    throw exception;
+                }
+            }
+        };
+    }
+}
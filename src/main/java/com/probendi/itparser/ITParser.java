@@ -1,11 +1,28 @@
 package com.probendi.itparser;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * Queries the <a href="https://www.corpusthomisticum.org/it/index.age">Index Thomisticus</a>, parses the query's
@@ -18,6 +35,10 @@ import java.util.List;
  * Furthermore, it generates a JSON file consisting of an array of objects:
  * {@code {"entries":[{"work":"Super Sent.","position":"Super Sent., lib. 1 q. 1 a. 1 arg. 1.","text":"..."}]}}
  * <p>
+ * {@code --keep-alive=SECONDS} sets how long the idle connections of every HTTP client of the process are kept
+ * open, through the {@code jdk.httpclient.keepalive.timeout} system property, which the JDK reads once, when the
+ * first HTTP client is created; hence it is set before any crawler is built.
+ * <p>
  * Copyright &copy; 2023-2024, Daniele Di Salvo
  *
  * @author Daniele Di Salvo
@@ -25,10 +46,49 @@ import java.util.List;
  */
 public class ITParser {
 
-    private static final String USAGE = "Usage: java -jar it-parser-3.0.1.jar input";
+    private static final String USAGE = "Usage: java -jar it-parser-3.0.1.jar " +
+            "[--concurrency=N [--adaptive]] [--max-rps=N] [--endpoint=URL] [--output-dir=DIR] " +
+            "[--cache=DIR [--cache-ttl=HOURS] [--cache-size=MB]] [--reuse-sessions] [--http-version=1.1|2] " +
+            "[--connect-timeout=SECONDS] [--request-timeout=SECONDS] [--keep-alive=SECONDS] " +
+            "[--order=case|place|work] [--output-mode=channel|mapped|gzip] [--format=csv,json,columnar] " +
+            "[--incremental] [--retries=N] [--retry-backoff=SECONDS] [--no-journal] [--metrics=FILE] " +
+            "[--works=FIRST-LAST] [--archive=DIR [--offline]] [--work-dir=DIR [--lease=SECONDS]] input\n" +
+            "       java -jar it-parser-3.0.1.jar --serve=PORT [--memory-cache=ENTRIES] [options]";
+
+    private static final String ADAPTIVE = "adaptive";
+    private static final String ARCHIVE = "archive";
+    private static final String CACHE = "cache";
+    private static final String CACHE_SIZE = "cache-size";
+    private static final String CACHE_TTL = "cache-ttl";
+    private static final String CONCURRENCY = "concurrency";
+    private static final String CONNECT_TIMEOUT = "connect-timeout";
+    private static final String ENDPOINT = "endpoint";
+    private static final String FORMAT = "format";
+    private static final String INCREMENTAL = "incremental";
+    private static final String HTTP_VERSION = "http-version";
+    private static final String KEEP_ALIVE = "keep-alive";
+    private static final String LEASE = "lease";
+    private static final String MAX_RPS = "max-rps";
+    private static final String MEMORY_CACHE = "memory-cache";
+    private static final String METRICS = "metrics";
+    private static final String NO_JOURNAL = "no-journal";
+    private static final String OFFLINE = "offline";
+    private static final String ORDER = "order";
+    private static final String OUTPUT_DIR = "output-dir";
+    private static final String OUTPUT_MODE = "output-mode";
+    private static final String REQUEST_TIMEOUT = "request-timeout";
+    private static final String RETRIES = "retries";
+    private static final String RETRY_BACKOFF = "retry-backoff";
+    private static final String REUSE_SESSIONS = "reuse-sessions";
+    private static final String SERVE = "serve";
+    private static final String WORK_DIR = "work-dir";
+    private static final String WORKS = "works";
 
+    private static final String COLUMNAR_FILE = "entries.itc";
     private static final String CSV_FILE = "entries.csv";
+    private static final String JOURNAL_FILE = "journal";
     private static final String JSON_FILE = "entries.json";
+    private static final String STATE_DIR = ".it-parser";
 
     /**
      * Runs {@code it-parser}.
@@ -38,30 +98,387 @@ public class ITParser {
     public static void main(String[] args) {
         long start = System.currentTimeMillis();
 
-        if (args.length != 1) {
+        Map<String, String> options = new HashMap<>();
+        String input = parseArguments(args, options);
+        if (input == null && !options.containsKey(SERVE) || input != null && options.containsKey(SERVE)) {
             System.out.println(USAGE);
             System.exit(-1);
         }
 
-        Path path = Paths.get(args[0]);
         List<String> terms = new LinkedList<>();
-        try {
-            terms.addAll(Files.readAllLines(path));
-        } catch (IOException e) {
-            System.err.println("failed to read input file " + args[0]);
-            System.exit(-1);
+        if (input != null) {
+            try {
+                terms.addAll(Files.readAllLines(Paths.get(input)));
+            } catch (IOException e) {
+                System.err.println("failed to read input file " + input);
+                System.exit(-1);
+            }
         }
 
-        Crawler crawler = new Crawler(terms);
         try {
-            List<ConsolidatedEntry> entries = crawler.crawl();
-            new CsvWriter().write(CSV_FILE, entries);
-            new JsonWriter().write(JSON_FILE, entries);
+            if (options.containsKey(KEEP_ALIVE)) {
+                System.setProperty("jdk.httpclient.keepalive.timeout",
+                        Integer.toString(intOption(options, KEEP_ALIVE, 0)));
+            }
+            URI endpoint = URI.create(options.getOrDefault(ENDPOINT, Crawler.INDEX_THOMISTICUS.toString()));
+            Path outputDir = Paths.get(options.getOrDefault(OUTPUT_DIR, "."));
+            Crawler.Builder builder = Crawler.newBuilder(terms)
+                    .endpoint(endpoint)
+                    .maxConcurrency(intOption(options, CONCURRENCY, 1))
+                    .adaptiveConcurrency(options.containsKey(ADAPTIVE))
+                    .maxRequestsPerSecond(doubleOption(options, MAX_RPS, 0))
+                    .reuseSessions(options.containsKey(REUSE_SESSIONS))
+                    .version("1.1".equals(options.get(HTTP_VERSION))
+                            ? HttpClient.Version.HTTP_1_1 : HttpClient.Version.HTTP_2)
+                    .connectTimeout(Duration.ofSeconds(intOption(options, CONNECT_TIMEOUT, 10)))
+                    .requestTimeout(Duration.ofSeconds(intOption(options, REQUEST_TIMEOUT, 300)))
+                    .retries(intOption(options, RETRIES, 3))
+                    .retryBackoff(Duration.ofSeconds(intOption(options, RETRY_BACKOFF, 1)))
+                    .order(enumOption(options, ORDER, EntryOrder.CASE));
+            if (options.containsKey(WORKS)) {
+                int[] works = rangeOption(options, WORKS);
+                builder.works(works[0], works[1]);
+            }
+            if (options.containsKey(CACHE)) {
+                builder.cache(new ResponseCache(Paths.get(options.get(CACHE)),
+                        Duration.ofHours(intOption(options, CACHE_TTL, 24 * 7)),
+                        intOption(options, CACHE_SIZE, 1024) * 1024L * 1024L));
+            }
+            if (options.containsKey(ARCHIVE)) {
+                builder.archive(new ResponseArchive(Paths.get(options.get(ARCHIVE))))
+                        .offline(options.containsKey(OFFLINE));
+            } else if (options.containsKey(OFFLINE)) {
+                throw new IllegalArgumentException("--offline needs --archive");
+            }
+            if (options.containsKey(OFFLINE) && options.containsKey(INCREMENTAL)) {
+                // the manifest would list none of the lines replayed
+                throw new IllegalArgumentException("--offline cannot be combined with --incremental");
+            }
+            CrawlMetrics metrics = new CrawlMetrics();
+            builder.metrics(metrics);
+            register(metrics);
+            if (options.containsKey(SERVE)) {
+                serve(builder, options);
+                return;
+            }
+            if (options.containsKey(WORK_DIR)) {
+                if (options.containsKey(INCREMENTAL)) {
+                    // the shards take the place of the manifest
+                    throw new IllegalArgumentException("--work-dir cannot be combined with --incremental");
+                }
+                try (Crawler crawler = builder.build()) {
+                    work(crawler, terms, outputDir, options);
+                }
+                return;
+            }
+            CrawlManifest manifest = null;
+            if (options.containsKey(INCREMENTAL)) {
+                manifest = new CrawlManifest(outputDir.resolve(STATE_DIR));
+                builder.manifest(manifest);
+            }
+            CrawlJournal journal = null;
+            // replaying the archive, there is nothing worth checkpointing
+            if (!options.containsKey(NO_JOURNAL) && !options.containsKey(OFFLINE)) {
+                journal = new CrawlJournal(outputDir.resolve(STATE_DIR).resolve(JOURNAL_FILE));
+                builder.journal(journal);
+            }
+            Crawler crawler = builder.build();
+            // a single pass writes every file, which are left untouched should the crawl fail
+            OutputMode mode = enumOption(options, OUTPUT_MODE, OutputMode.CHANNEL);
+            EntrySink sink = openSinks(options.getOrDefault(FORMAT, "csv,json"), outputDir, mode);
+            try {
+                crawler.crawl(sink);
+                long t = System.nanoTime();
+                sink.close();
+                metrics.recordWrite(System.nanoTime() - t, 0);
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                try {
+                    sink.abort();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                if (journal != null) {
+                    try {
+                        journal.close();
+                        System.err.printf("%d lines checkpointed, which a new run resumes from\n", journal.size());
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                }
+                throw e;
+            } finally {
+                crawler.close();
+                if (options.containsKey(METRICS)) {
+                    // the metrics of a failed crawl tell where it failed
+                    writeMetrics(metrics, Paths.get(options.get(METRICS)));
+                }
+            }
+            if (manifest != null) {
+                // the manifest lists the lines only once the outputs hold their entries
+                manifest.save();
+                System.out.printf("%d of %d lines unchanged\n", manifest.unchanged(), terms.size());
+            }
+            if (journal != null) {
+                if (journal.resumed() > 0) {
+                    System.out.printf("%d of %d lines resumed\n", journal.resumed(), terms.size());
+                }
+                // the journal is no longer needed once the outputs hold the entries
+                journal.delete();
+                if (manifest == null) {
+                    deleteIfEmpty(outputDir.resolve(STATE_DIR));
+                }
+            }
 
             System.out.printf("execution time: %d s\n", (System.currentTimeMillis() - start) / 1000);
-        } catch (IOException | InterruptedException e) {
+        } catch (IllegalArgumentException | IOException | InterruptedException e) {
             System.err.println(e.getMessage());
             System.exit(-1);
         }
     }
+
+    /**
+     * Serves the queries on the loopback interface, until the process is stopped. The sessions are reused across the
+     * queries, and the entries of the most recent lines are kept in memory.
+     *
+     * @param builder the builder of the crawler shared by the queries
+     * @param options the options
+     * @throws IOException if the server cannot be started
+     */
+    private static void serve(Crawler.Builder builder, Map<String, String> options) throws IOException {
+        builder.reuseSessions(true)
+                .memoryCache(new MemoryCache(intOption(options, MEMORY_CACHE, 1_000_000)));
+        Crawler crawler = builder.build();
+        ITParserServer server = new ITParserServer(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), intOption(options, SERVE, 0)), crawler);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            crawler.close();
+        }));
+        server.start();
+        System.out.printf("serving queries on http://localhost:%d%s\n", server.port(), ITParserServer.PATH);
+    }
+
+    /**
+     * Searches the lines as one of the workers sharing the work directory, and merges the shards of all the workers
+     * into the files, if this worker is the one to do so, i.e., the first to find every line done.
+     *
+     * @param crawler   the crawler
+     * @param terms     the lines
+     * @param outputDir the directory of the files
+     * @param options   the options
+     * @throws IOException          if a line could not be searched or an I/O error occurs
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private static void work(Crawler crawler, List<String> terms, Path outputDir, Map<String, String> options)
+            throws IOException, InterruptedException {
+        ShardedCrawl crawl = new ShardedCrawl(Paths.get(options.get(WORK_DIR)), terms,
+                Duration.ofSeconds(intOption(options, LEASE, 300)));
+        crawl.work(crawler, intOption(options, CONCURRENCY, 1));
+        System.out.printf("%d lines searched by this worker, %d of %d lines done\n", crawl.crawled(), crawl.done(),
+                terms.size());
+        if (crawl.takenOver() > 0) {
+            System.out.printf("%d expired leases taken over\n", crawl.takenOver());
+        }
+        if (crawl.leaseMerge()) {
+            crawl.merge(enumOption(options, ORDER, EntryOrder.CASE), openSinks(options.getOrDefault(FORMAT, "csv,json"),
+                    outputDir, enumOption(options, OUTPUT_MODE, OutputMode.CHANNEL)));
+        }
+    }
+
+    /**
+     * Registers the given metrics with the platform MBean server, replacing those of a previous run, if any.
+     *
+     * @param metrics the metrics
+     */
+    private static void register(CrawlMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(CrawlMetrics.OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(metrics, name);
+        } catch (JMException e) {
+            System.err.println("failed to register the metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a JSON summary of the given metrics to the given file.
+     *
+     * @param metrics the metrics
+     * @param file    the file
+     */
+    private static void writeMetrics(CrawlMetrics metrics, Path file) {
+        try {
+            metrics.writeJson(file);
+        } catch (IOException e) {
+            System.err.println("failed to write the metrics to " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the given directory, unless it holds any file.
+     *
+     * @param dir the directory
+     * @throws IOException if an I/O error occurs
+     */
+    private static void deleteIfEmpty(Path dir) throws IOException {
+        try {
+            Files.deleteIfExists(dir);
+        } catch (DirectoryNotEmptyException e) {
+            // e.g., the cache is stored within the directory
+        }
+    }
+
+    /**
+     * Opens a sink writing to a file of each of the given formats.
+     *
+     * @param formats   a comma-separated list of formats among {@code csv}, {@code json} and {@code columnar}
+     * @param outputDir the directory of the files
+     * @param mode      the output mode of the CSV and JSON files, which are named after {@code .gz} if compressed
+     * @return a sink writing to all the files
+     * @throws IllegalArgumentException if a format is unknown
+     * @throws IOException              if a file cannot be opened
+     */
+    static EntrySink openSinks(String formats, Path outputDir, OutputMode mode) throws IOException {
+        String suffix = mode == OutputMode.GZIP ? ".gz" : "";
+        Map<String, EntrySink> sinks = new LinkedHashMap<>();
+        try {
+            for (String format : formats.split(",")) {
+                format = format.trim().toLowerCase(Locale.ROOT);
+                if (sinks.containsKey(format)) {
+                    continue;
+                }
+                sinks.put(format, switch (format) {
+                    case "csv" -> new CsvWriter(mode).open(outputDir.resolve(CSV_FILE + suffix).toString());
+                    case "json" -> new JsonWriter(mode).open(outputDir.resolve(JSON_FILE + suffix).toString());
+                    case "columnar" -> new ColumnarWriter().open(outputDir.resolve(COLUMNAR_FILE).toString());
+                    default -> throw new IllegalArgumentException("--" + FORMAT + " must be a list of csv, json " +
+                            "and columnar: " + formats);
+                });
+            }
+        } catch (IOException | RuntimeException e) {
+            for (EntrySink sink : sinks.values()) {
+                try {
+                    sink.abort();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+        return EntrySink.tee(sinks.values().toArray(EntrySink[]::new));
+    }
+
+    /**
+     * Splits the command line arguments into {@code --name=value} options and the input file.
+     *
+     * @param args    the command line arguments
+     * @param options the map to which the options are added
+     * @return the input file, or {@code null} if the arguments are not valid
+     */
+    static String parseArguments(String[] args, Map<String, String> options) {
+        String input = null;
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int n = arg.indexOf('=');
+                if (n == -1) {
+                    options.put(arg.substring(2), "");
+                } else {
+                    options.put(arg.substring(2, n), arg.substring(n + 1));
+                }
+            } else if (input == null) {
+                input = arg;
+            } else {
+                return null;
+            }
+        }
+        return input;
+    }
+
+    /**
+     * Returns the value of the given enumerated option, which is case-insensitive.
+     *
+     * @param options      the options
+     * @param name         the option's name
+     * @param defaultValue the value to be returned if the option is missing
+     * @param <E>          the option's type
+     * @return the value of the option
+     * @throws IllegalArgumentException if the option's value is not a constant of the option's type
+     */
+    static <E extends Enum<E>> E enumOption(Map<String, String> options, String name, E defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(defaultValue.getDeclaringClass(), value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("--" + name + " must be one of " +
+                    Arrays.stream(defaultValue.getDeclaringClass().getEnumConstants())
+                            .map(c -> c.name().toLowerCase(Locale.ROOT))
+                            .collect(Collectors.joining(", ")) + ": " + value);
+        }
+    }
+
+    /**
+     * Returns the value of the given integer option.
+     *
+     * @param options      the options
+     * @param name         the option's name
+     * @param defaultValue the value to be returned if the option is missing
+     * @return the value of the option
+     * @throws IllegalArgumentException if the option's value is not an integer
+     */
+    static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be an integer: " + value);
+        }
+    }
+
+    /**
+     * Returns the value of the given range option, e.g., {@code 0-114}.
+     *
+     * @param options the options
+     * @param name    the option's name
+     * @return the first and the last value of the range
+     * @throws IllegalArgumentException if the option's value is not a range of integers
+     */
+    static int[] rangeOption(Map<String, String> options, String name) {
+        String value = options.get(name);
+        int n = value.indexOf('-');
+        try {
+            return new int[]{Integer.parseInt(value.substring(0, n)), Integer.parseInt(value.substring(n + 1))};
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a range of integers, e.g., 0-114: " + value);
+        }
+    }
+
+    /**
+     * Returns the value of the given decimal option.
+     *
+     * @param options      the options
+     * @param name         the option's name
+     * @param defaultValue the value to be returned if the option is missing
+     * @return the value of the option
+     * @throws IllegalArgumentException if the option's value is not a number
+     */
+    static double doubleOption(Map<String, String> options, String name, double defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a number: " + value);
+        }
+    }
 }
@@ -0,0 +1,264 @@
+package com.probendi.itparser;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves queries to the <a href="https://www.corpusthomisticum.org/it/index.age">Index Thomisticus</a> over HTTP, so
+ * that a long-running process keeps its JVM warm, its connections and sessions open, and the entries of recent
+ * lines in memory across queries.
+ * <p>
+ * A query is a {@code POST} to {@code /query} whose body holds the lines to be searched, one per line, encoded in
+ * UTF-8. The consolidated entries are streamed back as they are drained, as CSV, by default, or as JSON with
+ * {@code ?format=json}; {@code ?order=case|place|work} sets their order. Every query is handled on a virtual thread
+ * of its own, by a crawler which shares the client, the sessions, the limiter, the caches and the metrics of the
+ * server's crawler.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public class ITParserServer implements Closeable {
+
+    /**
+     * The path of the queries.
+     */
+    public static final String PATH = "/query";
+
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String CSV = "text/csv; charset=UTF-8";
+    private static final String JSON = "application/json; charset=UTF-8";
+    private static final String TEXT = "text/plain; charset=UTF-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("it-parser-query-", 0).factory());
+    private final Crawler crawler;
+
+    /**
+     * Creates a new server, which is not started yet.
+     *
+     * @param address the address to listen on, e.g., a loopback address, since the queries are not authenticated
+     * @param crawler the crawler whose settings, client, sessions and caches are shared by the queries; its lines
+     *                are ignored
+     * @throws IllegalArgumentException if address or crawler is {@code null}
+     * @throws IOException              if the server cannot be bound to the address
+     */
+    public ITParserServer(InetSocketAddress address, Crawler crawler) throws IOException {
+        if (address == null) {
+            throw new IllegalArgumentException("address cannot be null");
+        }
+        if (crawler == null) {
+            throw new IllegalArgumentException("crawler cannot be null");
+        }
+        this.crawler = crawler;
+        this.server = HttpServer.create(address, 0);
+        server.createContext(PATH, this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts serving the queries.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the port the server listens on, e.g., if it was bound to an ephemeral port.
+     *
+     * @return the port
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops serving the queries, waiting for the running ones to complete.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    /**
+     * Answers the given query. Should the query fail once the entries are being streamed, the exchange is left open
+     * and an exception thrown, so that the server closes the connection without sending the last chunk: the client
+     * then finds the response truncated, rather than mistaking it for a complete one.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        answer(exchange);
+        exchange.close();
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+        Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+        String format = parameters.getOrDefault("format", "csv").toLowerCase(Locale.ROOT);
+        if (!format.equals("csv") && !format.equals("json")) {
+            error(exchange, 400, "format must be one of csv, json: " + format);
+            return;
+        }
+        EntryOrder order;
+        try {
+            order = EntryOrder.valueOf(parameters.getOrDefault("order", "case").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            error(exchange, 400, "order must be one of case, place, work: " + parameters.get("order"));
+            return;
+        }
+        List<String> lines = lines(exchange);
+        if (lines.isEmpty()) {
+            error(exchange, 400, "the query holds no line");
+            return;
+        }
+
+        ResponseSink sink = new ResponseSink(exchange, format.equals("json"));
+        try {
+            crawler.withLines(lines, order).crawl(sink);
+            sink.close();
+        } catch (CrawlException e) {
+            failed(exchange, sink, 502, e);
+            return;
+        } catch (InterruptedException e) {
+            failed(exchange, sink, 503, e);
+            Thread.currentThread().interrupt();
+            return;
+        } catch (IOException | RuntimeException e) {
+            failed(exchange, sink, 500, e);
+            return;
+        }
+        System.out.printf("%d lines, %d entries in %d ms\n", lines.size(), sink.count,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Answers a failed query with the given status code, unless the entries are already being streamed, in which
+     * case the response is cut short by throwing an exception.
+     *
+     * @throws IOException if the entries are already being streamed, or if the error cannot be sent
+     */
+    private static void failed(HttpExchange exchange, ResponseSink sink, int status, Exception e)
+            throws IOException {
+        System.err.println("query failed: " + e.getMessage());
+        if (sink.out != null) {
+            throw new IOException("the response was cut short", e);
+        }
+        error(exchange, status, String.valueOf(e.getMessage()));
+    }
+
+    private static void error(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] b = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set(CONTENT_TYPE, TEXT);
+        exchange.sendResponseHeaders(status, b.length);
+        exchange.getResponseBody().write(b);
+    }
+
+    /**
+     * Returns the non-blank lines of the request's body, trimmed.
+     */
+    private static List<String> lines(HttpExchange exchange) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (InputStream in = exchange.getRequestBody()) {
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\r?\n")) {
+                if (!line.isBlank()) {
+                    lines.add(line.trim());
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the parameters of the given query string.
+     */
+    private static Map<String, String> parameters(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int n = parameter.indexOf('=');
+            if (n != -1) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, n), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(n + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Streams the consolidated entries to the response, whose headers are sent along with the first entry, so that
+     * a query failing before any entry is drained can still be answered with an error.
+     */
+    private static final class ResponseSink implements EntrySink {
+
+        private final HttpExchange exchange;
+        private final boolean json;
+        private final EntryEncoder encoder = new EntryEncoder();
+        private BufferedWriter out;
+        private int count;
+
+        ResponseSink(HttpExchange exchange, boolean json) {
+            this.exchange = exchange;
+            this.json = json;
+        }
+
+        @Override
+        public void accept(ConsolidatedEntry entry) throws IOException {
+            open();
+            if (json) {
+                if (count > 0) {
+                    out.append(",\n");
+                }
+                encoder.appendJson(entry, out);
+            } else {
+                encoder.appendCsv(entry, out);
+            }
+            count++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            open();
+            if (json) {
+                out.append("\n]}");
+            }
+            out.close();
+        }
+
+        private void open() throws IOException {
+            if (out != null) {
+                return;
+            }
+            exchange.getResponseHeaders().set(CONTENT_TYPE, json ? JSON : CSV);
+            // the length is unknown, hence the entries are sent in chunks
+            exchange.sendResponseHeaders(200, 0);
+            out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8),
+                    1 << 16);
+            out.append(json ? "{\"entries\":[\n" : CsvWriter.HEADER);
+        }
+    }
+}
@@ -1,9 +1,7 @@
 package com.probendi.itparser;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Collection;
+import java.nio.file.Path;
 
 /**
  * Writes entries to a JSON file.
@@ -15,23 +13,63 @@ import java.util.Collection;
  */
 public class JsonWriter implements Writer {
 
+    private final OutputMode mode;
+
+    /**
+     * Creates a new {@code JsonWriter} which writes through a {@link java.nio.channels.FileChannel}.
+     */
+    public JsonWriter() {
+        this(OutputMode.CHANNEL);
+    }
+
+    /**
+     * Creates a new {@code JsonWriter} which writes in the given mode.
+     *
+     * @param mode the output mode
+     * @throws IllegalArgumentException if mode is {@code null}
+     * @since 3.1
+     */
+    public JsonWriter(OutputMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("mode cannot be null");
+        }
+        this.mode = mode;
+    }
+
     @Override
-    public void write(String file, Collection<ConsolidatedEntry> entries) throws IOException {
-        String name = validate(file, entries);
-        boolean first = true;
-        try (final FileWriter fw = new FileWriter(name);
-             final BufferedWriter bw = new BufferedWriter(fw)) {
-            bw.write("{\"entries\":[\n");
-            for (final ConsolidatedEntry entry : entries) {
-                if (!first) {
-                    bw.write(",\n");
-                } else {
-                    first = false;
+    public EntrySink open(String file) throws IOException {
+        final String name = validate(file);
+        final ChannelOutput out = new ChannelOutput(Path.of(name), mode);
+        out.append("{\"entries\":[\n");
+        return new EntrySink() {
+            private final EntryEncoder encoder = new EntryEncoder();
+            private int count;
+
+            @Override
+            public void accept(ConsolidatedEntry entry) throws IOException {
+                if (count > 0) {
+                    out.append(",\n");
                 }
-                bw.write(entry.toJson());
+                encoder.appendJson(entry, out);
+                count++;
             }
-            bw.append("\n]}");
-        }
-        System.out.printf("Written %d entries to %s\n", entries.size(), name);
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    out.append("\n]}");
+                } catch (IOException e) {
+                    out.abort();
+                    throw e;
+                }
+                out.close();
+                System.out.printf("Written %d entries to %s\n", count, name);
+            }
+
+            @Override
+            public void abort() throws IOException {
+                out.abort();
+            }
+        };
     }
 }
@@ -0,0 +1,126 @@
+package com.probendi.itparser;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory cache of the entries parsed for a query line, which is meant to be shared by the crawlers of a
+ * long-running process, e.g., {@link ITParserServer}.
+ * <p>
+ * The cache holds up to a maximum number of entries, summed over all the lines, beyond which the least recently
+ * used lines are evicted. The cached entries are unmodifiable.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public class MemoryCache {
+
+    private final Map<String, Set<Entry>> lines = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxEntries;
+    private long size;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a new {@code MemoryCache}.
+     *
+     * @param maxEntries the maximum number of entries, summed over all the lines
+     * @throws IllegalArgumentException if maxEntries is not strictly positive
+     */
+    public MemoryCache(long maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be strictly positive");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the entries cached for the given key.
+     *
+     * @param key the key
+     * @return the entries, or {@code null} if the key is not cached
+     * @throws IllegalArgumentException if key is {@code null}
+     */
+    public synchronized Set<Entry> get(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        Set<Entry> entries = lines.get(key);
+        if (entries == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entries;
+    }
+
+    /**
+     * Caches the given entries under the given key, evicting the least recently used lines if the cache grows
+     * beyond its maximum size. Lines holding more entries than the maximum size are not cached.
+     *
+     * @param key     the key
+     * @param entries the entries
+     * @throws IllegalArgumentException if key or entries is {@code null}
+     */
+    public synchronized void put(String key, Set<Entry> entries) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        if (entries == null) {
+            throw new IllegalArgumentException("entries cannot be null");
+        }
+        if (entries.size() > maxEntries) {
+            return;
+        }
+        Set<Entry> previous = lines.put(key, Collections.unmodifiableSet(entries));
+        if (previous != null) {
+            size -= previous.size();
+        }
+        size += entries.size();
+        for (Iterator<Set<Entry>> i = lines.values().iterator(); size > maxEntries; ) {
+            size -= i.next().size();
+            i.remove();
+        }
+    }
+
+    /**
+     * Returns the number of lines cached.
+     *
+     * @return the number of lines
+     */
+    public synchronized int lines() {
+        return lines.size();
+    }
+
+    /**
+     * Returns the number of entries cached, summed over all the lines.
+     *
+     * @return the number of entries
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of lookups which found the key.
+     *
+     * @return the number of hits
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups which did not find the key.
+     *
+     * @return the number of misses
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+}
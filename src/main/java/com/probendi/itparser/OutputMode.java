@@ -0,0 +1,30 @@
+package com.probendi.itparser;
+
+/**
+ * How the CSV and JSON files are written.
+ * <p>
+ * In any mode the files are encoded in UTF-8, whatever the platform's charset, and are written to a temporary
+ * file which replaces the target file only once it is complete.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public enum OutputMode {
+
+    /**
+     * Through a {@link java.nio.channels.FileChannel}, from a large direct buffer.
+     */
+    CHANNEL,
+
+    /**
+     * Into regions of the file mapped in memory.
+     */
+    MAPPED,
+
+    /**
+     * Compressed with gzip, the blocks of the file being compressed in parallel.
+     */
+    GZIP
+}
@@ -0,0 +1,137 @@
+package com.probendi.itparser;
+
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the bodies of the requests to the {@code Index Thomisticus}.
+ * <p>
+ * The constant segments of every body, e.g., the selection of the works or the options of the 'concordances'
+ * request, are encoded once, when the templates are created. A body is published as a sequence of byte arrays,
+ * i.e., the constant segments, which are shared by all the requests, and the URL-encoded term, hence building a
+ * request allocates little more than the term itself. The length of the body is known beforehand, so that the
+ * request is not sent in chunks.
+ * <p>
+ * Templates are immutable, hence thread-safe.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+final class RequestTemplates {
+
+    private static final byte[] TEXT = ascii("text=");
+    private static final byte[] TERM = ascii("&Form.option.terms=terms");
+    private static final byte[] FORMS = ascii("&Form.option.works=works");
+    private static final byte[] FORM_PREFIX = ascii("&terms%5B0%5D.listedLemmata%5B0%5D.listedFormae%5B");
+    private static final byte[] FORM_SUFFIX = ascii("%5D.selected=on");
+    // a page which the server ignored would repeat the cases of the first page, which the crawler checks
+    private static final byte[] PAGE = ascii("&results.page=");
+
+    private final byte[] works;
+    private final byte[] concordances;
+    private final String key;
+
+    /**
+     * Creates new templates.
+     *
+     * @param firstWork          the index of the first work to be searched
+     * @param lastWork           the index of the last work to be searched
+     * @param concordanceOptions the options of the 'concordances' request, as URL-encoded form data
+     * @param pageSize           the number of cases per page of concordances
+     */
+    RequestTemplates(int firstWork, int lastWork, String concordanceOptions, int pageSize) {
+        StringBuilder sb = new StringBuilder("&Form.option.options=options");
+        for (int i = firstWork; i <= lastWork; i++) {
+            sb.append("&listedWorks%5B").append(i).append("%5D.selected=on");
+        }
+        this.works = ascii(sb.toString());
+        this.concordances = ascii(concordanceOptions + "&results.pageSize=" + pageSize +
+                "&Form.option.concordances=concordances");
+        this.key = firstWork + "-" + lastWork + "\n" + concordanceOptions;
+    }
+
+    /**
+     * Returns the options which the entries of a line depend on, i.e., the works and the options of the
+     * 'concordances' request, as part of the key of the line.
+     *
+     * @return the options
+     */
+    String key() {
+        return key;
+    }
+
+    /**
+     * Returns the body of the 'term' request.
+     *
+     * @param term the term
+     * @return the body
+     */
+    HttpRequest.BodyPublisher term(String term) {
+        return publisher(TEXT, encode(term), TERM);
+    }
+
+    /**
+     * Returns the body of the 'forms' request.
+     *
+     * @param strings the term followed by its forms
+     * @return the body
+     */
+    HttpRequest.BodyPublisher forms(String[] strings) {
+        List<byte[]> segments = new ArrayList<>(3 + 3 * (strings.length - 1));
+        segments.add(TEXT);
+        segments.add(encode(strings[0]));
+        segments.add(FORMS);
+        for (int i = 1; i < strings.length; i++) {
+            segments.add(FORM_PREFIX);
+            segments.add(encode(strings[i]));
+            segments.add(FORM_SUFFIX);
+        }
+        return publisher(segments.toArray(byte[][]::new));
+    }
+
+    /**
+     * Returns the body of the 'works' request.
+     *
+     * @param term the term
+     * @return the body
+     */
+    HttpRequest.BodyPublisher works(String term) {
+        return publisher(TEXT, encode(term), works);
+    }
+
+    /**
+     * Returns the body of the 'concordances' request of the given page.
+     *
+     * @param term the term
+     * @param page the page, starting from 1
+     * @return the body
+     */
+    HttpRequest.BodyPublisher concordances(String term, int page) {
+        if (page == 1) {
+            return publisher(TEXT, encode(term), concordances);
+        }
+        return publisher(TEXT, encode(term), concordances, PAGE, ascii(Integer.toString(page)));
+    }
+
+    private static HttpRequest.BodyPublisher publisher(byte[]... segments) {
+        long length = 0;
+        for (byte[] segment : segments) {
+            length += segment.length;
+        }
+        return HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofByteArrays(List.of(segments)),
+                length);
+    }
+
+    private static byte[] encode(String s) {
+        return ascii(URLEncoder.encode(s, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,283 @@
+package com.probendi.itparser;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An archive of the raw 'concordances' pages downloaded for each line, so that the entries can be parsed again,
+ * e.g., once the parser has changed, without querying the {@code Index Thomisticus} again.
+ * <p>
+ * Every line is stored in a file of its own, named after the SHA-256 digest of its key, which holds the key, the
+ * line and its pages, in the order in which they were requested, each one compressed as a GZIP member of its own:
+ * {@code [int magic][int n][n bytes: key][int n][n bytes: line][int pages]} followed by
+ * {@code [int n][n bytes: page]} for every page. A file is written once all the pages of the line have been
+ * downloaded, to a temporary file of its own thread and process which then replaces the previous one, if any, so
+ * that the same line can be archived by several threads, or by several workers sharing the archive, at the same time.
+ * <p>
+ * The files are read by mapping them in memory, and their pages are decompressed straight from the mapping.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public class ResponseArchive {
+
+    private static final int MAGIC = 0x49545231; // ITR1
+    private static final String SUFFIX = ".pages";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final String worker = ManagementFactory.getRuntimeMXBean().getName().replaceAll("[^A-Za-z0-9.-]", "_");
+
+    /**
+     * Creates a new {@code ResponseArchive} stored in the given directory, which is created if needed.
+     *
+     * @param directory the directory
+     * @throws IllegalArgumentException if directory is {@code null}
+     * @throws IOException              if the directory cannot be created
+     */
+    public ResponseArchive(Path directory) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Returns a new recorder of the pages of a line.
+     *
+     * @return a new recorder
+     */
+    Recorder recorder() {
+        return new Recorder();
+    }
+
+    /**
+     * Archives the pages recorded for the given line, replacing those archived before, if any.
+     *
+     * @param key      the key of the line's query
+     * @param line     the line
+     * @param recorder the recorder of the line's pages
+     * @throws IllegalArgumentException if key, line or recorder is {@code null}
+     * @throws IOException              if an I/O error occurs
+     */
+    void put(String key, String line, Recorder recorder) throws IOException {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        if (line == null) {
+            throw new IllegalArgumentException("line cannot be null");
+        }
+        if (recorder == null) {
+            throw new IllegalArgumentException("recorder cannot be null");
+        }
+        List<byte[]> pages = recorder.pages();
+        Path file = file(key);
+        Path tmp = file.resolveSibling(file.getFileName() + "." + worker + "." + Thread.currentThread().threadId() +
+                TMP_SUFFIX);
+        try {
+            try (OutputStream os = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16))) {
+                out.writeInt(MAGIC);
+                writeString(out, key);
+                writeString(out, line);
+                out.writeInt(pages.size());
+                for (byte[] page : pages) {
+                    out.writeInt(page.length);
+                    out.write(page);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /**
+     * Passes the lines of the pages archived for the given key to the given consumer, one page after another.
+     *
+     * @param key      the key of the line's query
+     * @param consumer the consumer of the lines of the pages
+     * @return {@code true} if the key is archived; {@code false} otherwise
+     * @throws IllegalArgumentException if key or consumer is {@code null}
+     * @throws IOException              if the archive cannot be read or is corrupted
+     */
+    boolean replay(String key, Consumer<String> consumer) throws IOException {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer cannot be null");
+        }
+        Path file = file(key);
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping outlives the channel
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("not an archive: " + file);
+            }
+            if (!key.equals(readString(buffer))) {
+                // a collision of the digests
+                return false;
+            }
+            readString(buffer);
+            int pages = buffer.getInt();
+            for (int i = 0; i < pages; i++) {
+                int length = buffer.getInt();
+                ByteBuffer page = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(new ByteBufferInputStream(page), 1 << 16), StandardCharsets.UTF_8))) {
+                    for (String s; (s = reader.readLine()) != null; ) {
+                        consumer.accept(s);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // e.g., a truncated file
+            throw new IOException("corrupted archive " + file, e);
+        }
+        return true;
+    }
+
+    private Path file(String key) {
+        return directory.resolve(CrawlManifest.keyHash(key) + SUFFIX);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] b = new byte[buffer.getInt()];
+        buffer.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Records the pages of a line, compressing their lines as they are read.
+     */
+    static final class Recorder implements Consumer<String> {
+
+        private final List<byte[]> pages = new ArrayList<>();
+        private ByteArrayOutputStream bytes;
+        private BufferedWriter out;
+
+        /**
+         * Starts a new page, to which the following lines are added.
+         */
+        void page() {
+            finish();
+            bytes = new ByteArrayOutputStream(1 << 16);
+            try {
+                out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(bytes, 1 << 16),
+                        StandardCharsets.UTF_8), 1 << 16);
+            } catch (IOException e) {
+                // a byte array never fails
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Adds the given line to the current page.
+         *
+         * @param line a line of the page, without its line terminator
+         */
+        @Override
+        public void accept(String line) {
+            try {
+                out.write(line);
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private List<byte[]> pages() {
+            finish();
+            return pages;
+        }
+
+        private void finish() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            pages.add(bytes.toByteArray());
+            out = null;
+            bytes = null;
+        }
+    }
+
+    /**
+     * Reads a buffer, e.g., a region of a file mapped in memory, without copying it first.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.probendi.itparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A persistent cache of the entries parsed for a query line.
+ * <p>
+ * Every line is stored in a file of its own, named after the SHA-256 digest of its key, which holds the key
+ * itself, the time at which the file was written, and the entries encoded by {@link EntryCodec}. Entries older
+ * than the time-to-live are ignored and removed. A hit refreshes the file's modification time, so that, when the
+ * cache grows beyond its maximum size, the least recently used files are evicted first.
+ * <p>
+ * The size and the order of use of the files are read from the directory once, when the cache is created, and then
+ * kept up to date in memory, so that a put does not need to list the directory. Files written by another process
+ * sharing the directory are accounted for when they are first hit.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public class ResponseCache {
+
+    private static final int MAGIC = 0x49544331; // ITC1
+    private static final String SUFFIX = ".entries";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final Duration ttl;
+    private final long maxBytes;
+    private final String worker = ManagementFactory.getRuntimeMXBean().getName().replaceAll("[^A-Za-z0-9.-]", "_");
+
+    // the sizes of the files, from the least to the most recently used
+    private final Map<Path, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    /**
+     * Creates a new {@code ResponseCache} stored in the given directory, which is created if needed.
+     *
+     * @param directory the directory
+     * @param ttl       the time-to-live of the entries
+     * @param maxBytes  the maximum size of the cache, in bytes
+     * @throws IllegalArgumentException if directory or ttl is {@code null}, or if ttl or maxBytes is not strictly
+     *                                  positive
+     * @throws IOException              if the directory cannot be created or listed
+     */
+    public ResponseCache(Path directory, Duration ttl, long maxBytes) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+        if (ttl == null || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be strictly positive");
+        }
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be strictly positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.ttl = ttl;
+        this.maxBytes = maxBytes;
+        index();
+    }
+
+    /**
+     * Returns the entries cached for the given key.
+     *
+     * @param key the key
+     * @return the entries, or {@code null} if the key is not cached or has expired
+     * @throws IllegalArgumentException if key is {@code null}
+     */
+    public Set<Entry> get(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        Path file = file(key);
+        try (InputStream is = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a cache entry");
+            }
+            long created = in.readLong();
+            if (!in.readUTF().equals(key) || System.currentTimeMillis() - created > ttl.toMillis()) {
+                delete(file);
+                return null;
+            }
+            Set<Entry> entries = EntryCodec.read(in);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            touch(file);
+            return entries;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // a corrupted or concurrently evicted entry is a miss
+            delete(file);
+            return null;
+        }
+    }
+
+    /**
+     * Caches the given entries under the given key, evicting the least recently used entries if the cache
+     * exceeds its maximum size.
+     *
+     * @param key     the key
+     * @param entries the entries
+     * @throws IllegalArgumentException if key or entries is {@code null}
+     * @throws IOException              if an I/O error occurs
+     */
+    public void put(String key, Set<Entry> entries) throws IOException {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        if (entries == null) {
+            throw new IllegalArgumentException("entries cannot be null");
+        }
+        Path file = file(key);
+        Path tmp = file.resolveSibling(file.getFileName() + "." + worker + "." + Thread.currentThread().threadId() +
+                TMP_SUFFIX);
+        long length;
+        try {
+            try (OutputStream os = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+                out.writeInt(MAGIC);
+                out.writeLong(System.currentTimeMillis());
+                out.writeUTF(key);
+                EntryCodec.write(out, entries);
+            }
+            length = Files.size(tmp);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        added(file, length);
+    }
+
+    /**
+     * Reads the size and the time of last use of the files in the directory.
+     *
+     * @throws IOException if the directory cannot be listed
+     */
+    private void index() throws IOException {
+        record CachedFile(Path path, long size, long lastModified) {
+        }
+
+        List<CachedFile> cached = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : paths.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).toList()) {
+                try {
+                    cached.add(new CachedFile(path, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+                } catch (NoSuchFileException e) {
+                    // evicted meanwhile
+                }
+            }
+        }
+        cached.sort(Comparator.comparingLong(CachedFile::lastModified));
+        for (CachedFile file : cached) {
+            files.put(file.path(), file.size());
+            size += file.size();
+        }
+    }
+
+    /**
+     * Marks the given file as the most recently used, adding it to the index if it was written by another process.
+     *
+     * @param file the file
+     */
+    private void touch(Path file) {
+        synchronized (this) {
+            if (files.get(file) != null) {
+                return;
+            }
+        }
+        try {
+            added(file, Files.size(file));
+        } catch (IOException e) {
+            // evicted meanwhile
+        }
+    }
+
+    /**
+     * Adds the given file to the index as the most recently used, then deletes the least recently used files until
+     * the cache no longer exceeds its maximum size.
+     *
+     * @param file   the file
+     * @param length the size of the file, in bytes
+     */
+    private synchronized void added(Path file, long length) {
+        Long previous = files.put(file, length);
+        size += length - (previous != null ? previous : 0);
+        Iterator<Map.Entry<Path, Long>> eldest = files.entrySet().iterator();
+        while (size > maxBytes && eldest.hasNext()) {
+            Map.Entry<Path, Long> entry = eldest.next();
+            eldest.remove();
+            size -= entry.getValue();
+            delete(entry.getKey());
+        }
+    }
+
+    /**
+     * Removes the given file from the directory and from the index.
+     *
+     * @param file the file
+     */
+    private void delete(Path file) {
+        synchronized (this) {
+            Long length = files.remove(file);
+            if (length != null) {
+                size -= length;
+            }
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("failed to delete " + file + ": " + e.getMessage());
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(CrawlManifest.keyHash(key) + SUFFIX);
+    }
+}
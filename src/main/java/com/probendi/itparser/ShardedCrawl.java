@@ -0,0 +1,409 @@
+package com.probendi.itparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A crawl shared by several worker processes, on one or several hosts, through a common directory.
+ * <p>
+ * The first worker writes the lines to {@code lines.txt}, which the other workers check against their own input.
+ * A worker leases a line by creating its lock file, {@code leases/N.lock}, which fails if another worker holds the
+ * lease, and renews the lease by touching the file while it searches the line. A lease which has not been renewed
+ * for longer than its duration, e.g., because its worker died, expires and is taken over by another worker. A lock
+ * file holds the ID of its worker, which deletes it only if it still holds its ID. The entries of every line are
+ * written to a shard of their own, {@code shards/N.entries}, encoded by {@link EntryCodec}, which marks the line as
+ * done.
+ * <p>
+ * Once every line is done, a single worker, the one which leases {@code merge.lock}, merges the shards in the order
+ * of the lines, so that the merged entries are consolidated exactly as {@link Crawler#crawl()} does.
+ * <p>
+ * Should a worker take over a lease which was renewed in the meantime, the line is searched twice; since the shards
+ * are replaced atomically, the outcome is the same.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+public class ShardedCrawl {
+
+    private static final int MAGIC = 0x49545331; // ITS1
+    private static final String LINES = "lines.txt";
+    private static final String LEASES = "leases";
+    private static final String SHARDS = "shards";
+    private static final String MERGE_LOCK = "merge.lock";
+    private static final String MERGED = "merged";
+
+    private final Path directory;
+    private final List<String> lines;
+    private final Duration lease;
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    // unique even among the workers of a single process
+    private final String worker = ManagementFactory.getRuntimeMXBean().getName() + "-" +
+            INSTANCES.incrementAndGet();
+    private final Set<Path> held = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger crawled = new AtomicInteger();
+    private final AtomicInteger takenOver = new AtomicInteger();
+
+    /**
+     * Joins the crawl of the given lines shared through the given directory, which is created if needed.
+     *
+     * @param directory the directory shared by the workers
+     * @param lines     the lines to be searched
+     * @param lease     how long a lease lasts unless it is renewed
+     * @throws IllegalArgumentException if directory, lines or lease is {@code null}, if lease is not strictly
+     *                                  positive, or if the directory holds the crawl of other lines
+     * @throws IOException              if an I/O error occurs
+     */
+    public ShardedCrawl(Path directory, List<String> lines, Duration lease) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+        if (lines == null) {
+            throw new IllegalArgumentException("lines cannot be null");
+        }
+        if (lease == null || lease.isNegative() || lease.isZero()) {
+            throw new IllegalArgumentException("lease must be strictly positive");
+        }
+        this.directory = directory;
+        this.lines = List.copyOf(lines);
+        this.lease = lease;
+        Files.createDirectories(directory.resolve(LEASES));
+        Files.createDirectories(directory.resolve(SHARDS));
+
+        Path file = directory.resolve(LINES);
+        Path tmp = directory.resolve(LINES + "." + tmpSuffix());
+        Files.write(tmp, this.lines, StandardCharsets.UTF_8);
+        try {
+            // the first worker wins, since a link, unlike a move, never replaces an existing file
+            Files.createLink(file, tmp);
+        } catch (FileAlreadyExistsException e) {
+            // another worker has written the lines
+        } finally {
+            Files.delete(tmp);
+        }
+        if (!this.lines.equals(Files.readAllLines(file, StandardCharsets.UTF_8))) {
+            throw new IllegalArgumentException(directory + " holds the crawl of other lines");
+        }
+    }
+
+    /**
+     * Searches the lines which are neither done nor leased by another worker, up to {@code maxConcurrency} at the
+     * same time, until every line is either done or leased.
+     *
+     * @param crawler        the crawler which searches the lines, whose own lines are ignored
+     * @param maxConcurrency the maximum number of lines searched at the same time
+     * @throws IllegalArgumentException if crawler is {@code null}, or if maxConcurrency is not strictly positive
+     * @throws IOException              if a line could not be searched or an I/O error occurs
+     * @throws InterruptedException     if the thread is interrupted
+     */
+    public void work(Crawler crawler, int maxConcurrency) throws IOException, InterruptedException {
+        if (crawler == null) {
+            throw new IllegalArgumentException("crawler cannot be null");
+        }
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be strictly positive");
+        }
+        // the workers start from different lines, so that they seldom race for the same lease
+        int first = Math.floorMod(worker.hashCode(), Math.max(1, lines.size()));
+        AtomicInteger next = new AtomicInteger();
+        Thread renewer = startRenewer();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Void>> futures = new ArrayList<>(maxConcurrency);
+            for (int i = 0; i < maxConcurrency; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int n; (n = next.getAndIncrement()) < lines.size(); ) {
+                        crawlLine(crawler, (first + n) % lines.size());
+                    }
+                    return null;
+                }));
+            }
+            try {
+                for (Future<Void> future : futures) {
+                    Crawler.await(future);
+                }
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                executor.shutdownNow();
+                throw e;
+            }
+        } finally {
+            renewer.interrupt();
+        }
+    }
+
+    /**
+     * Searches the given line, unless it is done or leased by another worker.
+     */
+    private void crawlLine(Crawler crawler, int index) throws IOException, InterruptedException {
+        Path shard = shard(index);
+        if (Files.exists(shard)) {
+            return;
+        }
+        Path lock = directory.resolve(LEASES).resolve(index + ".lock");
+        if (!lease(lock)) {
+            return;
+        }
+        try {
+            // the line may have been done since the lease expired
+            if (Files.exists(shard)) {
+                return;
+            }
+            Set<Entry> entries = crawler.crawlLine(lines.get(index));
+            Path tmp = shard.resolveSibling(shard.getFileName() + "." + tmpSuffix());
+            try {
+                try (OutputStream os = Files.newOutputStream(tmp);
+                     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+                    out.writeInt(MAGIC);
+                    EntryCodec.write(out, entries);
+                }
+                Files.move(tmp, shard, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
+            crawled.incrementAndGet();
+        } finally {
+            release(lock);
+        }
+    }
+
+    /**
+     * Returns the number of lines searched by this worker.
+     *
+     * @return the number of lines
+     */
+    public int crawled() {
+        return crawled.get();
+    }
+
+    /**
+     * Returns the number of expired leases taken over by this worker.
+     *
+     * @return the number of leases
+     */
+    public int takenOver() {
+        return takenOver.get();
+    }
+
+    /**
+     * Returns the number of lines done by all the workers.
+     *
+     * @return the number of lines
+     * @throws IOException if an I/O error occurs
+     */
+    public int done() throws IOException {
+        int done = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            if (Files.exists(shard(i))) {
+                done++;
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Leases the merge of the shards, if every line is done and the shards have not been merged, nor are being
+     * merged by another worker.
+     *
+     * @return {@code true} if this worker is to merge the shards; {@code false} otherwise
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean leaseMerge() throws IOException {
+        if (Files.exists(directory.resolve(MERGED)) || done() < lines.size()) {
+            return false;
+        }
+        return lease(directory.resolve(MERGE_LOCK));
+    }
+
+    /**
+     * Merges the shards of the lines, in the order of the lines, and passes the consolidated entries to the given
+     * sink, which is then closed, and the shards marked as merged. Should the merge fail, the sink is aborted and
+     * the lease of the merge released, so that another worker can merge the shards.
+     *
+     * @param order the order of the consolidated entries
+     * @param sink  the sink of the consolidated entries
+     * @throws IllegalArgumentException if order or sink is {@code null}
+     * @throws IOException              if a shard cannot be read or an I/O error occurs
+     */
+    public void merge(EntryOrder order, EntrySink sink) throws IOException {
+        if (order == null) {
+            throw new IllegalArgumentException("order cannot be null");
+        }
+        if (sink == null) {
+            throw new IllegalArgumentException("sink cannot be null");
+        }
+        Path lock = directory.resolve(MERGE_LOCK);
+        boolean merged = false;
+        Thread renewer = startRenewer();
+        try {
+            Consolidator consolidator = new Consolidator();
+            for (int i = 0; i < lines.size(); i++) {
+                try (InputStream is = Files.newInputStream(shard(i));
+                     DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+                    if (in.readInt() != MAGIC) {
+                        throw new IOException("not a shard: " + shard(i));
+                    }
+                    consolidator.addAll(EntryCodec.read(in));
+                }
+            }
+            consolidator.drain(order, sink);
+            sink.close();
+            Files.write(directory.resolve(MERGED), List.of(worker), StandardCharsets.UTF_8);
+            merged = true;
+        } finally {
+            renewer.interrupt();
+            if (!merged) {
+                try {
+                    sink.abort();
+                } finally {
+                    release(lock);
+                }
+            }
+        }
+    }
+
+    /**
+     * Leases the given lock, by creating it or, if it has expired, by taking it over.
+     * <p>
+     * Of the workers which find the lease expired, the first one moves the lock out of the way, and creates its own.
+     * Any other worker then moves that fresh lock instead, which it tells from the expired one by its ID or by its
+     * time, and puts it back. Only a worker which starts leasing the lock while it is out of the way, i.e., within a
+     * few system calls, may lease it as well.
+     *
+     * @param lock the lock file
+     * @return {@code true} if the lock has been leased; {@code false} if it is held by another worker
+     * @throws IOException if an I/O error occurs
+     */
+    boolean lease(Path lock) throws IOException {
+        if (create(lock)) {
+            return true;
+        }
+        // the lease is held, unless it has expired
+        Path moved = lock.resolveSibling(lock.getFileName() + "." + tmpSuffix());
+        String holder;
+        try {
+            holder = holder(lock);
+            if (!expired(lock)) {
+                return false;
+            }
+            Files.move(lock, moved, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            // the lock was released, or is being taken over by another worker
+            return false;
+        }
+        if (!holder(moved).equals(holder) || !expired(moved)) {
+            // another worker has taken the lease over in the meantime
+            try {
+                Files.createLink(lock, moved);
+            } catch (FileAlreadyExistsException e) {
+                // yet another worker has leased the lock
+            } finally {
+                Files.delete(moved);
+            }
+            return false;
+        }
+        Files.delete(moved);
+        if (!create(lock)) {
+            return false;
+        }
+        takenOver.incrementAndGet();
+        return true;
+    }
+
+    private boolean expired(Path lock) throws IOException {
+        FileTime renewed = Files.getLastModifiedTime(lock);
+        return System.currentTimeMillis() - renewed.toMillis() >= lease.toMillis();
+    }
+
+    private String holder(Path lock) throws IOException {
+        return Files.readString(lock, StandardCharsets.UTF_8);
+    }
+
+    private boolean create(Path lock) throws IOException {
+        try {
+            Files.writeString(lock, worker, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE);
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        }
+        held.add(lock);
+        return true;
+    }
+
+    /**
+     * Releases the given lock, unless it has been taken over by another worker.
+     */
+    void release(Path lock) throws IOException {
+        held.remove(lock);
+        try {
+            if (holder(lock).equals(worker)) {
+                Files.deleteIfExists(lock);
+            }
+        } catch (NoSuchFileException e) {
+            // the lock was taken over, and released, by another worker
+        }
+    }
+
+    /**
+     * Starts a thread which renews the leases held by this worker, until it is interrupted.
+     */
+    private Thread startRenewer() {
+        return Thread.ofVirtual().name("it-parser-lease-renewer").start(this::renewLeases);
+    }
+
+    /**
+     * Renews the leases held by this worker three times per lease, until interrupted.
+     */
+    private void renewLeases() {
+        try {
+            while (true) {
+                Thread.sleep(Math.max(1, lease.toMillis() / 3));
+                FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+                for (Path lock : held) {
+                    try {
+                        // a lock taken over by another worker is no longer this worker's to renew
+                        if (holder(lock).equals(worker)) {
+                            Files.setLastModifiedTime(lock, now);
+                        }
+                    } catch (IOException e) {
+                        // the lock was released in the meantime
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // the worker is done
+        }
+    }
+
+    private Path shard(int index) {
+        return directory.resolve(SHARDS).resolve(index + ".entries");
+    }
+
+    private String tmpSuffix() {
+        return worker.replaceAll("[^A-Za-z0-9.-]", "_") + "." + Thread.currentThread().threadId() + ".tmp";
+    }
+}
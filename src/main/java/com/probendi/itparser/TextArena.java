@@ -0,0 +1,132 @@
+package com.probendi.itparser;
+
+import java.util.Arrays;
+
+/**
+ * Stores texts in a single, growing {@code char} array, each one once: a text equal to a text already stored is
+ * given the same ID, so that texts can be compared by their IDs.
+ * <p>
+ * A text costs its characters plus two {@code int}s, rather than a {@link String} object and its array. The texts
+ * are looked up by hash in an open-addressing table of IDs.
+ * <p>
+ * An arena is not thread-safe.
+ * <p>
+ * Copyright &copy; 2023-2024, Daniele Di Salvo
+ *
+ * @author Daniele Di Salvo
+ * @since 3.1
+ */
+final class TextArena {
+
+    private static final int NO_TEXT = -1;
+
+    private char[] chars;
+    private int length;
+
+    // the offsets and the hashes of the texts, by ID; text i ends where text i + 1 starts
+    private int[] offsets;
+    private int[] hashes;
+    private int size;
+
+    // the hash table of the IDs
+    private int[] table;
+
+    /**
+     * Creates a new {@code TextArena}.
+     *
+     * @param capacity the expected number of characters
+     */
+    TextArena(int capacity) {
+        chars = new char[Math.max(capacity, 16)];
+        offsets = new int[9];
+        hashes = new int[8];
+        table = new int[16];
+        Arrays.fill(table, NO_TEXT);
+    }
+
+    /**
+     * Adds the given text, unless it is already stored.
+     *
+     * @param text the text
+     * @return the ID of the text
+     */
+    int add(String text) {
+        int hash = text.hashCode();
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        for (int id = table[slot]; id != NO_TEXT; id = table[slot]) {
+            if (hashes[id] == hash && equals(id, text)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (length + text.length() > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + text.length()));
+        }
+        text.getChars(0, text.length(), chars, length);
+        length += text.length();
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2 + 1);
+        }
+        hashes[size] = hash;
+        offsets[size + 1] = length;
+        table[slot] = size;
+        if (++size * 2 > table.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    /**
+     * Returns the text with the given ID.
+     *
+     * @param id the ID
+     * @return the text
+     */
+    String get(int id) {
+        return new String(chars, offsets[id], offsets[id + 1] - offsets[id]);
+    }
+
+    /**
+     * Appends the text with the given ID to the given {@link StringBuilder}, without creating a {@link String}.
+     *
+     * @param id the ID
+     * @param sb the {@link StringBuilder}
+     */
+    void appendTo(int id, StringBuilder sb) {
+        sb.append(chars, offsets[id], offsets[id + 1] - offsets[id]);
+    }
+
+    private boolean equals(int id, String text) {
+        int offset = offsets[id];
+        if (offsets[id + 1] - offset != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (chars[offset + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        Arrays.fill(table, NO_TEXT);
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (table[slot] != NO_TEXT) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id;
+        }
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -14,14 +14,42 @@ import java.util.Collection;
 public interface Writer {
 
     /**
-     * Writes the given entries to a file.
+     * Writes the given entries to a file. Should an entry fail to be written, the file is left untouched.
      *
      * @param file    the file's name
      * @param entries the entries to be written
      * @throws IllegalArgumentException if file is {@code null} or empty, or if entries is {@code null}
      * @throws IOException              if an I/O error occurs
      */
-    void write(String file, Collection<ConsolidatedEntry> entries) throws IOException;
+    default void write(String file, Collection<ConsolidatedEntry> entries) throws IOException {
+        String name = validate(file, entries);
+        EntrySink sink = open(name);
+        try {
+            for (ConsolidatedEntry entry : entries) {
+                sink.accept(entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                sink.abort();
+            } catch (IOException x) {
+                e.addSuppressed(x);
+            }
+            throw e;
+        }
+        sink.close();
+    }
+
+    /**
+     * Opens a file to which entries are written as they are passed to the returned sink. The file is complete
+     * once the sink has been closed.
+     *
+     * @param file the file's name
+     * @return a new sink
+     * @throws IllegalArgumentException if file is {@code null} or empty
+     * @throws IOException              if an I/O error occurs
+     * @since 3.1
+     */
+    EntrySink open(String file) throws IOException;
 
     /**
      * Validates the given file and entries.
@@ -32,15 +60,28 @@ public interface Writer {
      * @throws IllegalArgumentException if file is {@code null} or empty, or if entries is {@code null}
      */
     default String validate(String file, Collection<ConsolidatedEntry> entries) {
+        String name = validate(file);
+        if (entries == null) {
+            throw new IllegalArgumentException("entries cannot be null");
+        }
+        return name;
+    }
+
+    /**
+     * Validates the given file.
+     *
+     * @param file the file's name
+     * @return the trimmed file's name
+     * @throws IllegalArgumentException if file is {@code null} or empty
+     * @since 3.1
+     */
+    default String validate(String file) {
         if (file == null) {
             throw new IllegalArgumentException("file cannot be null");
         }
         if (file.isEmpty()) {
             throw new IllegalArgumentException("file cannot be blank");
         }
-        if (entries == null) {
-            throw new IllegalArgumentException("entries cannot be null");
-        }
         return file.trim();
     }
 }
@@ -0,0 +1,79 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveLimiterTest {
+
+    private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void growWhileLatencyHolds() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(16, true, 0);
+        assertEquals(1, limiter.limit(), "wrong initial limit");
+        for (int i = 0; i < 8; i++) {
+            roundTrip(limiter, LATENCY, 200);
+        }
+        assertEquals(16, limiter.limit(), "the limit did not grow up to its maximum");
+    }
+
+    @Test
+    void backOffOnSlowdown() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(16, true, 0);
+        for (int i = 0; i < 4; i++) {
+            roundTrip(limiter, LATENCY, 200);
+        }
+        int limit = limiter.limit();
+
+        roundTrip(limiter, 10 * LATENCY, 200);
+        assertEquals((int) (limit * 0.9), limiter.limit(), "the limit did not decrease once per round trip");
+
+        limit = limiter.limit();
+        roundTrip(limiter, LATENCY, 200);
+        assertEquals(limit, limiter.limit(), "the limit grew by more than one per round trip");
+    }
+
+    @Test
+    void backOffOnFailure() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(16, true, 0);
+        for (int i = 0; i < 4; i++) {
+            roundTrip(limiter, LATENCY, 200);
+        }
+        int limit = limiter.limit();
+
+        roundTrip(limiter, LATENCY, 503);
+        assertEquals(limit / 2, limiter.limit(), "the limit was not halved");
+        roundTrip(limiter, LATENCY, 404);
+        assertEquals(limit / 2, limiter.limit(), "a missing page changed the limit");
+    }
+
+    @Test
+    void limitRate() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(4, false, 50);
+        long start = System.nanoTime();
+        for (int i = 0; i < 11; i++) {
+            limiter.release(limiter.acquire(), 200);
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed >= 190, "11 requests at 50 per second took " + elapsed + " ms");
+    }
+
+    /**
+     * Sends as many requests as the limit allows, which are answered after the given latency.
+     */
+    private static void roundTrip(AdaptiveLimiter limiter, long latency, int statusCode)
+            throws InterruptedException {
+        int n = limiter.limit();
+        long[] starts = new long[n];
+        for (int i = 0; i < n; i++) {
+            starts[i] = limiter.acquire() - latency;
+        }
+        for (long start : starts) {
+            limiter.release(start, statusCode);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ChannelOutputIT {
+
+    @ParameterizedTest
+    @EnumSource(OutputMode.class)
+    void write(OutputMode mode, @TempDir Path dir) throws IOException {
+        // Latin, Greek and a supplementary character, which sooner or later straddle the buffers' boundaries
+        String line = "Quod quid erat esse, τὸ τί ἦν εἶναι, 𝔄, æ ";
+        StringBuilder expected = new StringBuilder();
+        Path file = dir.resolve("entries.csv");
+        try (ChannelOutput out = new ChannelOutput(file, mode, 4096)) {
+            for (int i = 0; i < 50_000; i++) {
+                out.append(line, 0, i % 31).append(line, i % 31, line.length()).append(Integer.toString(i));
+                out.append('\n');
+                expected.append(line).append(i).append('\n');
+            }
+            assertFalse(Files.exists(file), "the file was visible before it was complete");
+        }
+
+        assertEquals(expected.toString(), read(file, mode), "contents do not match");
+        assertEquals(List.of(file), list(dir), "the temporary file was not renamed");
+    }
+
+    @ParameterizedTest
+    @EnumSource(OutputMode.class)
+    void abort(OutputMode mode, @TempDir Path dir) throws IOException {
+        Path file = dir.resolve("entries.json");
+        Files.writeString(file, "previous");
+        ChannelOutput out = new ChannelOutput(file, mode);
+        out.append("partial");
+        out.abort();
+        assertEquals("previous", Files.readString(file), "the file was replaced");
+        assertEquals(List.of(file), list(dir), "the temporary file was not deleted");
+    }
+
+    @ParameterizedTest
+    @EnumSource(OutputMode.class)
+    void writeWithDefaultPermissions(OutputMode mode, @TempDir Path dir) throws IOException {
+        assumeTrue(Files.getFileAttributeView(dir, PosixFileAttributeView.class) != null, "not a POSIX file system");
+        // a file created the usual way, whose permissions are those left by the umask
+        Path expected = Files.writeString(dir.resolve("expected"), "");
+        Path file = dir.resolve("entries.csv");
+        try (ChannelOutput out = new ChannelOutput(file, mode)) {
+            out.append("entries");
+        }
+        assertEquals(Files.getPosixFilePermissions(expected), Files.getPosixFilePermissions(file),
+                "permissions do not match");
+    }
+
+    @Test
+    void writeEmptyGzip(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("entries.csv.gz");
+        new ChannelOutput(file, OutputMode.GZIP).close();
+        assertEquals("", read(file, OutputMode.GZIP), "contents do not match");
+    }
+
+    private static String read(Path file, OutputMode mode) throws IOException {
+        if (mode != OutputMode.GZIP) {
+            return Files.readString(file);
+        }
+        // the members of the file are read as a whole
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static List<Path> list(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.toList();
+        }
+    }
+}
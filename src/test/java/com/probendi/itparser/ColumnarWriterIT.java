@@ -0,0 +1,95 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ColumnarWriterIT {
+
+    @Test
+    void write(@TempDir Path dir) throws IOException {
+        List<ConsolidatedEntry> entries = List.of(
+                new ConsolidatedEntry(30, "Summa Theologiae", "Summa Theologiae, I q. 3", Set.of("esse")),
+                new ConsolidatedEntry(10, "Super Sent.", "Super Sent., lib. 1", Set.of("ens")),
+                new ConsolidatedEntry(20, "Summa Theologiae", "Summa Theologiae, I q. 1", Set.of("τὸ ὄν")));
+        Path file = dir.resolve("entries.itc");
+        new ColumnarWriter().write(file.toString(), entries);
+
+        try (ColumnarReader reader = new ColumnarReader(file)) {
+            assertEquals(3, reader.rows(), "wrong number of entries");
+            assertEquals(List.of(10, 20, 30), toList(reader.places()), "places do not match");
+            assertEquals(List.of("Summa Theologiae", "Super Sent."), reader.works(), "works do not match");
+            assertEquals(List.of(1, 0, 0), toList(reader.workIndexes()), "works do not match");
+            assertEquals(List.of("Super Sent., lib. 1", "Summa Theologiae, I q. 1", "Summa Theologiae, I q. 3"),
+                    toList(reader.positions()), "positions do not match");
+            assertEquals(List.of("ens", "τὸ ὄν", "esse"), toList(reader.texts()), "texts do not match");
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(file), files.toList(), "the temporary files were not deleted");
+        }
+    }
+
+    @Test
+    void writeMany(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("entries.itc");
+        try (EntrySink sink = new ColumnarWriter().open(file.toString())) {
+            for (int i = 100_000; i > 0; i--) {
+                sink.accept(new ConsolidatedEntry(i, "work " + i % 7, "position " + i, Set.of("text " + i)));
+            }
+        }
+
+        try (ColumnarReader reader = new ColumnarReader(file)) {
+            IntBuffer places = reader.places();
+            Iterator<String> texts = reader.texts();
+            for (int i = 1; i <= 100_000; i++) {
+                assertEquals(i, places.get(), "places do not match");
+                assertEquals("text " + i, texts.next(), "texts do not match");
+            }
+            assertEquals(7, reader.works().size(), "wrong number of works");
+        }
+    }
+
+    @Test
+    void writeWithDefaultPermissions(@TempDir Path dir) throws IOException {
+        assumeTrue(Files.getFileAttributeView(dir, PosixFileAttributeView.class) != null, "not a POSIX file system");
+        Path expected = Files.writeString(dir.resolve("expected"), "");
+        Path file = dir.resolve("entries.itc");
+        new ColumnarWriter().write(file.toString(), List.of());
+        assertEquals(Files.getPosixFilePermissions(expected), Files.getPosixFilePermissions(file),
+                "permissions do not match");
+    }
+
+    @Test
+    void readMalformed(@TempDir Path dir) throws IOException {
+        Path file = Files.writeString(dir.resolve("entries.itc"), "Work\tPosition\tText\n");
+        assertThrows(IOException.class, () -> new ColumnarReader(file).close());
+    }
+
+    private static List<Integer> toList(IntBuffer buffer) {
+        List<Integer> list = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            list.add(buffer.get());
+        }
+        return list;
+    }
+
+    private static List<String> toList(Iterator<String> iterator) {
+        List<String> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,75 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ConcordancesParserTest {
+
+    @Test
+    void accept() {
+        ConcordancesParser parser = new ConcordancesParser();
+        Stream.of("<html><body>",
+                "<div>Found 2 cases in 1 places</div>",
+                "  " + IndexThomisticusStub.line(2, 7, "Super Sent., lib. 1", "second"),
+                IndexThomisticusStub.line(1, 7, "Super Sent., lib. 1", "first"),
+                "</body></html>").forEach(parser);
+
+        assertEquals("Found 2", parser.found(), "headers do not match");
+        List<Entry> expected = List.of(
+                new Entry(1, 7, "Super Sent.", "Super Sent., lib. 1", "first [...]"),
+                new Entry(2, 7, "Super Sent.", "Super Sent., lib. 1", "second [...]"));
+        assertEquals(expected, List.copyOf(parser.entries()), "entries do not match");
+    }
+
+    @Test
+    void acceptInParallel() {
+        int cases = 10 * ConcordancesParser.CHUNK_SIZE + 7;
+        ConcordancesParser sequential = new ConcordancesParser();
+        ConcordancesParser parallel = new ConcordancesParser(ForkJoinPool.commonPool());
+        for (int i = cases; i > 0; i--) {
+            String line = IndexThomisticusStub.line(i, (i + 1) / 2, "Super Sent., lib. 1", "text " + i);
+            sequential.accept(line);
+            parallel.accept(line);
+        }
+
+        List<Entry> entries = new ArrayList<>(parallel.entries());
+        assertEquals(cases, entries.size(), "wrong number of entries");
+        assertEquals(List.copyOf(sequential.entries()), entries, "entries do not match");
+        for (int i = 0; i < cases; i++) {
+            assertEquals(i + 1, entries.get(i).caseNumber(), "entries are not ordered by case number");
+        }
+    }
+
+    @Test
+    void acceptRepeatedPage() {
+        ConcordancesParser sequential = new ConcordancesParser();
+        ConcordancesParser parallel = new ConcordancesParser(ForkJoinPool.commonPool());
+        // the same page twice
+        for (int page = 0; page < 2; page++) {
+            for (int i = 1; i <= ConcordancesParser.CHUNK_SIZE + 3; i++) {
+                String line = IndexThomisticusStub.line(i, (i + 1) / 2, "Super Sent., lib. 1", "text " + i);
+                sequential.accept(line);
+                parallel.accept(line);
+            }
+        }
+
+        assertEquals(ConcordancesParser.CHUNK_SIZE + 3, sequential.duplicates(), "wrong number of duplicates");
+        assertEquals(ConcordancesParser.CHUNK_SIZE + 3, parallel.duplicates(), "wrong number of duplicates");
+        assertEquals(ConcordancesParser.CHUNK_SIZE + 3, parallel.entries().size(), "wrong number of entries");
+    }
+
+    @Test
+    void acceptWithoutHeader() {
+        ConcordancesParser parser = new ConcordancesParser();
+        parser.accept("<html><body></body></html>");
+        assertNull(parser.found(), "unexpected header");
+        assertEquals(0, parser.entries().size(), "unexpected entries");
+    }
+}
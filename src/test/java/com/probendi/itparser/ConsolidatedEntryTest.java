@@ -24,4 +24,23 @@ class ConsolidatedEntryTest {
         String actual = entry.toJson();
         assertEquals(expected, actual, "lines do not match");
     }
+
+    @Test
+    void addText() {
+        ConsolidatedEntry entry = new ConsolidatedEntry(new Entry(1, 2, "work", "position", "a"));
+        entry.addText(Set.of("b"));
+        entry.addText("a");
+        assertEquals(List.of("a", "b"), List.copyOf(entry.text()), "texts do not match");
+        assertEquals("work\tposition\ta b\n", entry.toCsv(), "lines do not match");
+    }
+
+    @Test
+    void addTextToArena() {
+        ConsolidatedEntry entry = new ConsolidatedEntry(new Entry(1, 2, "work", "position", "a"), "work",
+                new TextArena(0));
+        entry.addText(Set.of("b"));
+        entry.addText("a");
+        assertEquals(List.of("a", "b"), List.copyOf(entry.text()), "texts do not match");
+        assertEquals("work\tposition\ta b\n", entry.toCsv(), "lines do not match");
+    }
 }
@@ -0,0 +1,90 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConsolidatorTest {
+
+    private static final Set<Entry> ENS = new TreeSet<>(List.of(
+            new Entry(1, 30, "Summa Theologiae", "pos 30", "ens 1"),
+            new Entry(2, 30, "Summa Theologiae", "pos 30", "ens 2"),
+            new Entry(3, 10, "De veritate", "pos 10", "ens 3"),
+            new Entry(4, 20, "Summa Theologiae", "pos 20", "ens 4")));
+
+    // the same case numbers, partly in the same places
+    private static final Set<Entry> ESSE = new TreeSet<>(List.of(
+            new Entry(1, 40, "De veritate", "pos 40", "esse 1"),
+            new Entry(2, 30, "Summa Theologiae", "pos 30", "esse 2"),
+            new Entry(3, 30, "Summa Theologiae", "pos 30", "ens 2")));
+
+    @Test
+    void mergeLinesByPlace() {
+        assertEquals(List.of(
+                        "30 [ens 1, ens 2, esse 2]",
+                        "40 [esse 1]",
+                        "10 [ens 3]",
+                        "20 [ens 4]"),
+                drain(EntryOrder.CASE));
+    }
+
+    @Test
+    void orderByPlace() {
+        assertEquals(List.of("10", "20", "30", "40"), places(drain(EntryOrder.PLACE)));
+    }
+
+    @Test
+    void orderByWork() {
+        assertEquals(List.of("10", "40", "20", "30"), places(drain(EntryOrder.WORK)));
+    }
+
+    @Test
+    void growBeyondInitialCapacity() {
+        Consolidator consolidator = new Consolidator();
+        for (int i = 1; i <= 100_000; i++) {
+            consolidator.add(new Entry(i, 100_001 - (i + 1) / 2, "w", "p", "t" + i));
+        }
+        assertEquals(50_000, consolidator.size(), "wrong number of entries");
+
+        List<String> entries = drainTo(consolidator, EntryOrder.CASE);
+        assertEquals("100000 [t1, t2]", entries.get(0), "wrong first entry");
+        assertEquals("50001 [t99999, t100000]", entries.get(49_999), "wrong last entry");
+        assertEquals(0, consolidator.size(), "the consolidator was not drained");
+    }
+
+    private static List<String> drain(EntryOrder order) {
+        Consolidator consolidator = new Consolidator();
+        consolidator.addAll(ENS);
+        consolidator.addAll(ESSE);
+        return drainTo(consolidator, order);
+    }
+
+    private static List<String> drainTo(Consolidator consolidator, EntryOrder order) {
+        List<String> entries = new ArrayList<>();
+        try {
+            consolidator.drain(order, new EntrySink() {
+                @Override
+                public void accept(ConsolidatedEntry entry) {
+                    entries.add(entry.placeNumber() + " " + entry.text());
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return entries;
+    }
+
+    private static List<String> places(List<String> entries) {
+        return entries.stream().map(e -> e.substring(0, e.indexOf(' '))).toList();
+    }
+}
@@ -0,0 +1,68 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CrawlJournalIT {
+
+    private static final Set<Entry> ENTRIES = new TreeSet<>(List.of(
+            new Entry(1, 10, "Super Sent.", "Super Sent., lib. 1 q. 1", "æternitas"),
+            new Entry(2, 10, "Super Sent.", "Super Sent., lib. 1 q. 1", "ens"),
+            new Entry(3, 11, "De veritate", "De veritate, q. 1 a. 1 co.", "quod primo intellectus concipit")));
+
+    @Test
+    void appendAndResume(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("state").resolve("journal");
+        try (CrawlJournal journal = new CrawlJournal(file)) {
+            assertNull(journal.get("ens 78"), "unexpected line");
+            journal.append("ens 78", ENTRIES);
+            journal.append("#26153", Set.of());
+        }
+
+        try (CrawlJournal journal = new CrawlJournal(file)) {
+            assertEquals(2, journal.size(), "wrong number of lines");
+            assertEquals(List.copyOf(ENTRIES), List.copyOf(journal.get("ens 78")), "entries do not match");
+            assertEquals(0, journal.get("#26153").size(), "entries do not match");
+            assertNull(journal.get("ens 79"), "unexpected line");
+            assertEquals(2, journal.resumed(), "wrong number of resumed lines");
+            journal.delete();
+        }
+        assertFalse(Files.exists(file), "the journal was not deleted");
+    }
+
+    @Test
+    void truncateTornRecord(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("journal");
+        try (CrawlJournal journal = new CrawlJournal(file)) {
+            journal.append("ens 78", ENTRIES);
+            journal.append("ens 79", ENTRIES);
+        }
+        // the last record was being written when the crawl was interrupted
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (CrawlJournal journal = new CrawlJournal(file)) {
+            assertEquals(1, journal.size(), "the torn record was read");
+            assertNull(journal.get("ens 79"), "the torn record was read");
+            journal.append("ens 79", ENTRIES);
+        }
+        try (CrawlJournal journal = new CrawlJournal(file)) {
+            assertEquals(2, journal.size(), "the record appended after the truncation was lost");
+            assertEquals(List.copyOf(ENTRIES), List.copyOf(journal.get("ens 79")), "entries do not match");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrawlMetricsTest {
+
+    @Test
+    void percentiles() {
+        CrawlMetrics metrics = new CrawlMetrics();
+        for (int i = 1; i <= 100; i++) {
+            metrics.recordRequest(CrawlException.Phase.WORKS, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertEquals(100L, metrics.getRequests().get("works"), "wrong number of requests");
+        assertEquals(0L, metrics.getRequests().get("term"), "wrong number of requests");
+        assertEquals(50.5, metrics.getMeanLatencyMillis().get("works"), 1e-9, "wrong mean");
+        double p99 = metrics.getP99LatencyMillis().get("works");
+        // the buckets are a quarter of a power of two wide
+        assertTrue(p99 >= 99 && p99 <= 99 * 1.25, "wrong 99th percentile: " + p99);
+    }
+
+    @Test
+    void toJson() {
+        CrawlMetrics metrics = new CrawlMetrics();
+        metrics.recordRequest(CrawlException.Phase.NEW_SEARCH, TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.recordConcordances(TimeUnit.MILLISECONDS.toNanos(20), TimeUnit.MILLISECONDS.toNanos(5), 42);
+        metrics.recordWrite(TimeUnit.MILLISECONDS.toNanos(2), 21);
+
+        String json = metrics.toJson();
+        assertTrue(json.startsWith("{\"elapsedMillis\":") && json.endsWith("}}\n"), json);
+        assertTrue(json.contains("\"entriesParsed\":42,\"entriesParsedPerSecond\":"), json);
+        assertTrue(json.contains("\"concordancesMillis\":20,\"parseMillis\":5,"), json);
+        assertTrue(json.contains("\"entriesWritten\":21,\"entriesWrittenPerSecond\":10500.000,"), json);
+        assertTrue(json.contains("\"new search\":{\"count\":1,\"meanMillis\":3.000,\"maxMillis\":3.000,"), json);
+        assertTrue(json.contains("\"concordances\":{\"count\":0,"), json);
+    }
+}
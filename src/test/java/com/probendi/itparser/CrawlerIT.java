@@ -0,0 +1,482 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrawlerIT {
+
+    private static final List<String> LINES = List.of(
+            "ens 78 79 80",
+            "#26153",
+            "\"id quod est\"",
+            "\"ea quae sunt\"",
+            "\"omnia sunt\"",
+            "esse 12 13",
+            "#12345",
+            "\"in quantum\"");
+
+    @Test
+    void crawlConcurrently() throws IOException, InterruptedException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(25, 20)) {
+            long start = System.nanoTime();
+            List<ConsolidatedEntry> sequential = new Crawler(stub.uri(), LINES, 1).crawl();
+            long sequentialNanos = System.nanoTime() - start;
+            assertEquals(1, stub.peakConcurrentRequests(), "the sequential crawl overlapped requests");
+
+            start = System.nanoTime();
+            List<ConsolidatedEntry> concurrent = new Crawler(stub.uri(), LINES, 4).crawl();
+            long concurrentNanos = System.nanoTime() - start;
+
+            assertFalse(sequential.isEmpty(), "no entries were found");
+            assertEquals(toCsv(sequential), toCsv(concurrent), "entries do not match");
+            assertTrue(stub.peakConcurrentRequests() <= 4, "too many sessions in flight");
+            assertTrue(concurrentNanos * 2 < sequentialNanos,
+                    String.format("no speedup: sequential %d ms, concurrent %d ms",
+                            sequentialNanos / 1_000_000, concurrentNanos / 1_000_000));
+        }
+    }
+
+    private static List<String> toCsv(List<ConsolidatedEntry> entries) {
+        return entries.stream().map(ConsolidatedEntry::toCsv).toList();
+    }
+
+    @Test
+    void crawlReplaysFixtures() throws IOException, InterruptedException, URISyntaxException {
+        Path fixtures = Path.of(getClass().getResource("/fixtures").toURI());
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, term -> 0, fixtures)) {
+            List<ConsolidatedEntry> entries = new Crawler(stub.uri(), List.of("ens 78 79"), 1).crawl();
+            assertEquals(5, stub.requests(), "wrong number of requests");
+            assertEquals(10, entries.size(), "wrong number of entries");
+            assertEquals("Super Sent.\tSuper Sent., lib. 1 q. 1 a. 1 arg. 1.\tVidetur quod praeter physicas " +
+                    "disciplinas nullam doctrinam habere oporteat. Homo enim non potest rationabiliter tendere nisi " +
+                    "in id quod est ens cognitum. Sed ens cognoscitur per scientiam physicam, cum omnia quae sunt, " +
+                    "sint naturalia1.\n", entries.get(0).toCsv(), "entries do not match");
+        }
+    }
+
+    @Test
+    void crawlFromCache(@TempDir Path dir) throws IOException, InterruptedException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 20)) {
+            ResponseCache cache = new ResponseCache(dir, Duration.ofHours(1), 1 << 20);
+            List<ConsolidatedEntry> cold = Crawler.newBuilder(LINES).endpoint(stub.uri()).cache(cache).build().crawl();
+            int requests = stub.requests();
+
+            List<String> lines = List.of(" ens  78 79 80", "#26153", "\"id quod est\"", "\"ea quae sunt\"",
+                    "\"omnia sunt\"", "esse 12 13 ", "#12345", "\"in quantum\"");
+            List<ConsolidatedEntry> warm = Crawler.newBuilder(lines).endpoint(stub.uri()).cache(cache).build().crawl();
+            assertEquals(requests, stub.requests(), "the warm crawl queried the server");
+            assertEquals(toCsv(cold), toCsv(warm), "entries do not match");
+        }
+    }
+
+    @Test
+    void crawlIncrementally(@TempDir Path dir) throws IOException, InterruptedException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 20)) {
+            CrawlManifest manifest = new CrawlManifest(dir);
+            Crawler.newBuilder(LINES.subList(0, 6)).endpoint(stub.uri()).manifest(manifest).build().crawl();
+            manifest.save();
+            int requests = stub.requests();
+
+            // a line has changed and two lines were added
+            List<String> lines = new ArrayList<>(LINES);
+            lines.set(0, "ens 78 79");
+            manifest = new CrawlManifest(dir);
+            List<ConsolidatedEntry> incremental = Crawler.newBuilder(lines)
+                    .endpoint(stub.uri())
+                    .manifest(manifest)
+                    .build()
+                    .crawl();
+            manifest.save();
+            assertEquals(5, manifest.unchanged(), "wrong number of unchanged lines");
+            // 'new search', 'term', 'forms', 'works' and 'concordances' for 'ens', then 3 requests per lemma or
+            // expression
+            assertEquals(requests + 5 + 3 + 3, stub.requests(), "the unchanged lines were crawled");
+
+            List<ConsolidatedEntry> full = new Crawler(stub.uri(), lines, 1).crawl();
+            assertEquals(toCsv(full), toCsv(incremental), "entries do not match");
+            try (Stream<Path> files = Files.list(dir)) {
+                // a segment per line and the manifest
+                assertEquals(lines.size() + 1, files.count(), "the segment of the changed line was not deleted");
+            }
+        }
+    }
+
+    @Test
+    void crawlRetryingFailures() throws IOException, InterruptedException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 20)) {
+            List<ConsolidatedEntry> expected = new Crawler(stub.uri(), LINES, 1).crawl();
+
+            stub.failNextRequests(2, 503);
+            List<ConsolidatedEntry> entries = Crawler.newBuilder(LINES)
+                    .endpoint(stub.uri())
+                    .retryBackoff(Duration.ofMillis(1))
+                    .build()
+                    .crawl();
+            assertEquals(toCsv(expected), toCsv(entries), "entries do not match");
+        }
+    }
+
+    @Test
+    void crawlFailing() throws IOException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 20)) {
+            stub.failConcordances(LINES.get(1), 404);
+            CrawlException e = assertThrows(CrawlException.class, () -> Crawler.newBuilder(LINES)
+                    .endpoint(stub.uri())
+                    .retryBackoff(Duration.ofMillis(1))
+                    .build()
+                    .crawl());
+            assertEquals(CrawlException.Phase.CONCORDANCES, e.phase(), "wrong phase");
+            assertEquals(404, e.statusCode(), "wrong status code");
+            assertEquals(LINES.get(1), e.line(), "wrong line");
+            assertFalse(e.isRetryable(), "a missing page is retryable");
+            // 'new search', 'term', 'forms', 'works' and 'concordances' for 'ens', then 3 requests for the lemma
+            assertEquals(5 + 3, stub.requests(), "a non-retryable failure was retried");
+
+            stub.failConcordances(null, 0);
+            stub.failNextRequests(Integer.MAX_VALUE, 500);
+            int requests = stub.requests();
+            e = assertThrows(CrawlException.class, () -> Crawler.newBuilder(LINES)
+                    .endpoint(stub.uri())
+                    .retries(2)
+                    .retryBackoff(Duration.ofMillis(1))
+                    .build()
+                    .crawl());
+            assertEquals(CrawlException.Phase.NEW_SEARCH, e.phase(), "wrong phase");
+            assertEquals(500, e.statusCode(), "wrong status code");
+            assertTrue(e.isRetryable(), "a server error is not retryable");
+            assertEquals(requests + 3, stub.requests(), "wrong number of attempts");
+        }
+    }
+
+    @Test
+    void crawlResumingFromJournal(@TempDir Path dir) throws IOException, InterruptedException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 20)) {
+            Path file = dir.resolve("journal");
+            stub.failConcordances(LINES.get(3), 404);
+            try (CrawlJournal journal = new CrawlJournal(file)) {
+                assertThrows(CrawlException.class, () -> Crawler.newBuilder(LINES)
+                        .endpoint(stub.uri())
+                        .journal(journal)
+                        .build()
+                        .crawl());
+                assertEquals(3, journal.size(), "the searched lines were not checkpointed");
+            }
+
+            stub.failConcordances(null, 0);
+            int requests = stub.requests();
+            List<ConsolidatedEntry> resumed;
+            try (CrawlJournal journal = new CrawlJournal(file)) {
+                resumed = Crawler.newBuilder(LINES).endpoint(stub.uri()).journal(journal).build().crawl();
+                assertEquals(3, journal.resumed(), "wrong number of resumed lines");
+                assertEquals(LINES.size(), journal.size(), "the missing lines were not checkpointed");
+            }
+            // 3 requests per lemma or expression, and 5 for 'esse'
+            assertEquals(requests + 4 * 3 + 5, stub.requests(), "the checkpointed lines were searched again");
+
+            List<ConsolidatedEntry> full = new Crawler(stub.uri(), LINES, 1).crawl();
+            assertEquals(toCsv(full), toCsv(resumed), "entries do not match");
+        }
+    }
+
+    @Test
+    void crawlCachedWithoutJournal(@TempDir Path dir) throws IOException, InterruptedException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 20)) {
+            MemoryCache cache = new MemoryCache(1_000);
+            Crawler.newBuilder(LINES.subList(0, 3)).endpoint(stub.uri()).memoryCache(cache).build().crawl();
+
+            try (CrawlJournal journal = new CrawlJournal(dir.resolve("journal"))) {
+                Crawler.newBuilder(LINES.subList(0, 4))
+                        .endpoint(stub.uri())
+                        .memoryCache(cache)
+                        .journal(journal)
+                        .build()
+                        .crawl();
+                assertEquals(1, journal.size(), "the cached lines were checkpointed");
+            }
+        }
+    }
+
+    @Test
+    void crawlAdaptively() throws IOException, InterruptedException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 48; i++) {
+            lines.add("\"ens " + i + "\"");
+        }
+        List<ConsolidatedEntry> expected;
+        int peak;
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(20, 4)) {
+            stub.capacity(4);
+            expected = new Crawler(stub.uri(), lines, 32).crawl();
+            peak = stub.peakConcurrentRequests();
+        }
+
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(20, 4)) {
+            stub.capacity(4);
+            List<ConsolidatedEntry> entries = Crawler.newBuilder(lines)
+                    .endpoint(stub.uri())
+                    .maxConcurrency(32)
+                    .adaptiveConcurrency(true)
+                    .build()
+                    .crawl();
+            assertEquals(toCsv(expected), toCsv(entries), "entries do not match");
+            assertTrue(stub.peakConcurrentRequests() < peak, String.format("the requests did not back off: " +
+                    "%d in flight, %d without adapting", stub.peakConcurrentRequests(), peak));
+        }
+    }
+
+    @Test
+    void crawlWithMetrics() throws IOException, InterruptedException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 25_000)) {
+            CrawlMetrics metrics = new CrawlMetrics();
+            List<ConsolidatedEntry> entries = Crawler.newBuilder(LINES.subList(0, 2))
+                    .endpoint(stub.uri())
+                    .metrics(metrics)
+                    // parsing in parallel, the parse time may exceed the streaming time
+                    .parallelParsing(false)
+                    .build()
+                    .crawl();
+
+            assertEquals(2, metrics.getLines(), "wrong number of lines");
+            assertEquals(Map.of("new search", 2L, "term", 1L, "forms", 1L, "works", 2L, "concordances", 6L),
+                    metrics.getRequests(), "wrong number of requests");
+            assertEquals(stub.bytesSent(), metrics.getBytesDownloaded(), "wrong number of bytes");
+            assertEquals(2 * 25_000, metrics.getEntriesParsed(), "wrong number of entries parsed");
+            assertEquals(entries.size(), metrics.getEntriesWritten(), "wrong number of entries written");
+            assertTrue(metrics.getParseMillis() <= metrics.getConcordancesMillis(), "parsing outlasted streaming");
+        }
+    }
+
+    @Test
+    void publishLines() throws IOException, InterruptedException, ExecutionException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 20)) {
+            LineSubscriber subscriber = new LineSubscriber();
+            Crawler.newBuilder(LINES).endpoint(stub.uri()).maxConcurrency(4).build().publish().subscribe(subscriber);
+            for (int i = 0; i < LINES.size(); i++) {
+                subscriber.request();
+            }
+            subscriber.completion.get();
+
+            assertEquals(LINES.size(), subscriber.lines.size(), "wrong number of lines");
+            for (String line : LINES) {
+                CrawledLine crawled = subscriber.lines.take();
+                assertEquals(line, crawled.line(), "the lines were not published in order");
+                assertEquals(toCsv(new Crawler(stub.uri(), List.of(line), 1).crawl()),
+                        toCsv(Crawler.consolidate(crawled.entries(), EntryOrder.CASE)), "entries do not match");
+            }
+        }
+    }
+
+    @Test
+    void publishWithBackpressure() throws IOException, InterruptedException {
+        List<String> lines = new ArrayList<>(LINES);
+        lines.addAll(LINES);
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 20)) {
+            LineSubscriber subscriber = new LineSubscriber();
+            Crawler.newBuilder(lines).endpoint(stub.uri()).maxConcurrency(2).build().publish().subscribe(subscriber);
+            subscriber.request();
+            assertEquals(lines.get(0), subscriber.lines.take().line(), "wrong line");
+
+            // a line being published, two buffered and two being searched
+            Thread.sleep(500);
+            assertTrue(stub.sessions() <= 6, "the crawl outran the subscriber: " + stub.sessions() + " lines");
+
+            subscriber.subscription.cancel();
+            Thread.sleep(500);
+            int sessions = stub.sessions();
+            Thread.sleep(500);
+            assertEquals(sessions, stub.sessions(), "the crawl went on after the subscription was cancelled");
+            assertNull(subscriber.completion.getNow(null), "the crawl completed");
+        }
+    }
+
+    /**
+     * Collects the published lines, requesting them one at a time.
+     */
+    private static class LineSubscriber implements Flow.Subscriber<CrawledLine> {
+
+        private final LinkedBlockingQueue<CrawledLine> lines = new LinkedBlockingQueue<>();
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private volatile Flow.Subscription subscription;
+
+        void request() throws InterruptedException {
+            while (subscription == null) {
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(CrawledLine item) {
+            lines.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completion.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completion.complete(null);
+        }
+    }
+
+    @Test
+    void crawlOffline(@TempDir Path dir) throws IOException, InterruptedException {
+        List<String> lines = LINES.subList(0, 3);
+        List<ConsolidatedEntry> online;
+        URI endpoint;
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 25_000)) {
+            endpoint = stub.uri();
+            online = Crawler.newBuilder(lines)
+                    .endpoint(endpoint)
+                    .archive(new ResponseArchive(dir))
+                    .build()
+                    .crawl();
+        }
+
+        // the stub is closed, hence any request would fail
+        List<ConsolidatedEntry> offline = Crawler.newBuilder(lines)
+                .endpoint(endpoint)
+                .archive(new ResponseArchive(dir))
+                .offline(true)
+                .retries(0)
+                .build()
+                .crawl();
+        assertEquals(toCsv(online), toCsv(offline), "entries do not match");
+
+        Crawler missing = Crawler.newBuilder(List.of("\"omnia sunt\""))
+                .endpoint(endpoint)
+                .archive(new ResponseArchive(dir))
+                .offline(true)
+                .build();
+        assertThrows(IOException.class, missing::crawl, "a line missing from the archive was crawled");
+    }
+
+    @Test
+    void crawlAllPages() throws IOException, InterruptedException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(100, 45_000)) {
+            List<ConsolidatedEntry> entries = new Crawler(stub.uri(), List.of("#26153"), 1).crawl();
+
+            // 'new search', 'works' and five 'concordances' pages
+            assertEquals(7, stub.requests(), "wrong number of requests");
+            assertEquals(22_500, entries.size(), "wrong number of entries");
+            // the four remaining pages are requested at once while the first one is parsed
+            assertTrue(stub.peakConcurrentRequests() >= 4, "the pages were not pipelined");
+        }
+    }
+
+    @Test
+    void crawlIgnoredPages() throws IOException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 25_000)) {
+            stub.ignorePages();
+            CrawlException e = assertThrows(CrawlException.class,
+                    () -> new Crawler(stub.uri(), List.of("#26153"), 1).crawl());
+            assertEquals(CrawlException.Phase.CONCORDANCES, e.phase(), "wrong phase");
+            assertFalse(e.isRetryable(), "repeated pages are retryable");
+            // 'new search', 'works' and three 'concordances' pages
+            assertEquals(5, stub.requests(), "repeated pages were retried");
+        }
+    }
+
+    @Test
+    void crawlReusingSessions() throws IOException, InterruptedException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 20)) {
+            List<ConsolidatedEntry> expected = new Crawler(stub.uri(), LINES, 1).crawl();
+            int requests = stub.requests();
+            int sessions = stub.sessions();
+
+            List<ConsolidatedEntry> actual = Crawler.newBuilder(LINES)
+                    .endpoint(stub.uri())
+                    .maxConcurrency(2)
+                    .reuseSessions(true)
+                    .build()
+                    .crawl();
+            assertEquals(toCsv(expected), toCsv(actual), "entries do not match");
+            assertTrue(stub.sessions() - sessions <= 2, "the sessions were not reused");
+            assertTrue(stub.requests() - requests <= requests - LINES.size() + 2, "the sessions were not reused");
+        }
+    }
+
+    @Test
+    void crawlReusingSessionsFailing() throws IOException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 20)) {
+            stub.failConcordances(LINES.get(1), 404);
+            CrawlException e = assertThrows(CrawlException.class, () -> Crawler.newBuilder(LINES)
+                    .endpoint(stub.uri())
+                    .reuseSessions(true)
+                    .retryBackoff(Duration.ofMillis(1))
+                    .build()
+                    .crawl());
+            assertEquals(404, e.statusCode(), "wrong status code");
+            // 5 requests for 'ens', then 'works' and 'concordances' for the lemma within the same session
+            assertEquals(5 + 2, stub.requests(), "a failure within a reused session was retried");
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {401, 302})
+    void crawlReusingSessionsExpiredOtherwise(int status) throws IOException, InterruptedException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 20)) {
+            List<ConsolidatedEntry> expected = new Crawler(stub.uri(), LINES, 1).crawl();
+
+            stub.expireSessionsAfter(4, status);
+            List<ConsolidatedEntry> actual;
+            try (Crawler crawler = Crawler.newBuilder(LINES)
+                    .endpoint(stub.uri())
+                    .reuseSessions(true)
+                    .retries(0)
+                    .build()) {
+                actual = crawler.crawl();
+            }
+            assertEquals(toCsv(expected), toCsv(actual), "entries do not match");
+        }
+    }
+
+    @Test
+    void crawlReusingExpiredSessions() throws IOException, InterruptedException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 20)) {
+            List<ConsolidatedEntry> expected = new Crawler(stub.uri(), LINES, 1).crawl();
+
+            // a session accepts the requests of a single line
+            stub.expireSessionsAfter(4);
+            List<ConsolidatedEntry> actual = Crawler.newBuilder(LINES)
+                    .endpoint(stub.uri())
+                    .reuseSessions(true)
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .build()
+                    .crawl();
+            assertEquals(toCsv(expected), toCsv(actual), "entries do not match");
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package com.probendi.itparser;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class CsvWriterIT {
 
@@ -29,4 +33,55 @@ class CsvWriterIT {
         assertEquals("work 1\twork 1, a\tabc", lines.get(1));
         assertEquals("work 2\twork 2, a\txyz", lines.get(2));
     }
+
+    @Test
+    void open() throws IOException {
+        try (EntrySink sink = EntrySink.tee(new CsvWriter().open("test.csv"), new JsonWriter().open("test.json"))) {
+            sink.accept(new ConsolidatedEntry(1, "work 1", "work 1, a", Set.of("abc")));
+            sink.accept(new ConsolidatedEntry(2, "work 2", "work 2, a", Set.of("xyz")));
+        }
+
+        List<String> lines = Files.readAllLines(Paths.get("test.csv"));
+        assertEquals(List.of("Work\tPosition\tText", "work 1\twork 1, a\tabc", "work 2\twork 2, a\txyz"), lines);
+        lines = Files.readAllLines(Paths.get("test.json"));
+        assertEquals(4, lines.size(), "the file has the wrong size");
+        assertEquals("{\"work\":\"work 2\",\"position\":\"work 2, a\",\"text\":\"xyz\"}", lines.get(2));
+    }
+
+    @Test
+    void abort(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("entries.csv");
+        Path json = dir.resolve("entries.json");
+        EntrySink sink = EntrySink.tee(new CsvWriter().open(csv.toString()), new JsonWriter().open(json.toString()));
+        sink.accept(new ConsolidatedEntry(1, "work 1", "work 1, a", Set.of("abc")));
+        sink.abort();
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count(), "the aborted files were not deleted");
+        }
+    }
+
+    @Test
+    void teeNull(@TempDir Path dir) throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> EntrySink.tee((EntrySink[]) null));
+        EntrySink csv = new CsvWriter().open(dir.resolve("entries.csv").toString());
+        assertThrows(IllegalArgumentException.class, () -> EntrySink.tee(csv, null));
+        csv.abort();
+    }
+
+    @Test
+    void writeFailing(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("entries.csv");
+        Files.writeString(csv, "previous");
+        List<ConsolidatedEntry> entries = new ArrayList<>();
+        entries.add(new ConsolidatedEntry(1, "work 1", "work 1, a", Set.of("abc")));
+        // an entry which fails to be encoded, once the first one has been written
+        entries.add(null);
+
+        assertThrows(NullPointerException.class, () -> new CsvWriter().write(csv.toString(), entries));
+        assertEquals("previous", Files.readString(csv), "the file was replaced");
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(csv), files.toList(), "the temporary file was not deleted");
+        }
+    }
 }
@@ -0,0 +1,30 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EntryEncoderTest {
+
+    private static final ConsolidatedEntry ENTRY = new ConsolidatedEntry(1, "Super Sent.", "Super Sent., lib. 1",
+            Set.of("dicitur \"ens\"\tquod\\est\n\u0001 in se"));
+
+    @Test
+    void appendCsv() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        new EntryEncoder().appendCsv(ENTRY, sb);
+        assertEquals("Super Sent.\tSuper Sent., lib. 1\t\"dicitur \"\"ens\"\"\tquod\\est\n\u0001 in se\"\n", sb.toString(),
+                "lines do not match");
+    }
+
+    @Test
+    void appendJson() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        new EntryEncoder().appendJson(ENTRY, sb);
+        assertEquals("{\"work\":\"Super Sent.\",\"position\":\"Super Sent., lib. 1\"," +
+                "\"text\":\"dicitur \\\"ens\\\"\\tquod\\\\est\\n\\u0001 in se\"}", sb.toString(), "lines do not match");
+    }
+}
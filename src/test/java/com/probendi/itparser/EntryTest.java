@@ -22,4 +22,33 @@ class EntryTest {
         Entry actual = Entry.parseEntry(line);
         assertEquals(expected, actual, "entries do not match");
     }
+
+    @Test
+    void parseEntryDecodesEntitiesAndUtf8() {
+        String line = "<p title=\"De ente et essentia, cap. 1.\">" +
+                "<span class=\"caseNumber\">Case 12.&nbsp;</span>" +
+                "<span class=\"ref\">" +
+                "<span class=\"placeNumber\">Place 345.&nbsp;</span>" +
+                "De ente et essentia, cap. 1.&nbsp;</span>" +
+                "&laquo;<b>ens</b>&raquo; &amp; \u00e6ternitas &#233;&#x101;&nbsp;caus&aelig; &bogus; a > b" +
+                "</p>";
+        Entry expected = new Entry(12, 345, "De ente et essentia",
+                "De ente et essentia, cap. 1.", "\u00abens\u00bb & \u00e6ternitas \u00e9\u0101 caus\u00e6 &bogus; a  b");
+        Entry actual = Entry.parseEntry(line);
+        assertEquals(expected, actual, "entries do not match");
+    }
+
+    @Test
+    void parseEntryWithoutComma() {
+        String line = "<p><span>Case 3.&nbsp;</span><span><span>Place 4.&nbsp;</span>Quodlibet&nbsp;</span>x</p>";
+        assertEquals(new Entry(3, 4, "Quodlibet", "Quodlibet", "x"), Entry.parseEntry(line));
+    }
+
+    @Test
+    void parseEntryMalformed() {
+        assertThrows(IllegalArgumentException.class, () -> Entry.parseEntry(null));
+        assertThrows(IllegalArgumentException.class, () -> Entry.parseEntry("<p title=\"x\">no case</p>"));
+        assertThrows(IllegalArgumentException.class,
+                () -> Entry.parseEntry("<span>Case 1x.&nbsp;</span><span>Place 4.&nbsp;</span>x&nbsp;</span>"));
+    }
 }
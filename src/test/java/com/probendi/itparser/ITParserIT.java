@@ -0,0 +1,55 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the whole pipeline against a local {@link IndexThomisticusStub}.
+ * <p>
+ * The number of cases can be raised up to a million with {@code -Dit.cases=1000000}.
+ */
+class ITParserIT {
+
+    private static final int CASES = Integer.getInteger("it.cases", 1_000);
+
+    @Test
+    void main(@TempDir Path dir) throws IOException {
+        Path input = dir.resolve("input.txt");
+        Files.write(input, List.of("ens 78 79", "\"id quod est\""));
+
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(5, CASES)) {
+            long start = System.nanoTime();
+            ITParser.main(new String[]{
+                    "--endpoint=" + stub.uri(), "--output-dir=" + dir, "--format=csv,json,columnar",
+                    "--metrics=" + dir.resolve("metrics.json"), input.toString()});
+            long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            System.out.printf("%d cases, %d bytes in %d ms: %d cases/s%n",
+                    CASES, stub.bytesSent(), millis, 1_000L * CASES / millis);
+
+            assertEquals(2, stub.sessions(), "wrong number of sessions");
+            // the stub puts every two consecutive cases of a term in the same place
+            int expected = 2 * ((CASES + 1) / 2);
+            try (Stream<String> lines = Files.lines(dir.resolve("entries.csv"))) {
+                assertEquals(expected + 1, lines.count(), "the CSV file has the wrong size");
+            }
+            try (Stream<String> lines = Files.lines(dir.resolve("entries.json"))) {
+                assertEquals(expected + 2, lines.count(), "the JSON file has the wrong size");
+            }
+            try (ColumnarReader reader = new ColumnarReader(dir.resolve("entries.itc"))) {
+                assertEquals(expected, reader.rows(), "the columnar file has the wrong size");
+            }
+            String metrics = Files.readString(dir.resolve("metrics.json"));
+            assertTrue(metrics.contains("\"entriesWritten\":" + expected + ","), metrics);
+            assertTrue(metrics.contains("\"bytesDownloaded\":" + stub.bytesSent() + ","), metrics);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ITParserServerIT {
+
+    private static final List<String> LINES = List.of("ens 78 79 80", "#26153", "\"id quod est\"");
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void serveQueries() throws IOException, InterruptedException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 20);
+             ITParserServer server = newServer(stub)) {
+            StringBuilder expected = new StringBuilder("Work\tPosition\tText\n");
+            new Crawler(stub.uri(), LINES, 1).crawl().forEach(entry -> expected.append(entry.toCsv()));
+            int requests = stub.requests();
+
+            HttpResponse<String> response = query(server, "", String.join("\n", LINES));
+            assertEquals(200, response.statusCode(), "wrong status code");
+            assertEquals("text/csv; charset=UTF-8", response.headers().firstValue("Content-Type").orElse(null));
+            assertEquals(expected.toString(), response.body(), "entries do not match");
+            // the sessions are reused across the lines
+            assertTrue(stub.requests() - requests < requests, "the sessions were not reused");
+
+            requests = stub.requests();
+            response = query(server, "?format=json&order=place", LINES.get(1) + "\n\n" + LINES.get(0));
+            assertEquals(200, response.statusCode(), "wrong status code");
+            assertTrue(response.body().startsWith("{\"entries\":[\n{\"work\":"), response.body());
+            assertTrue(response.body().endsWith("}\n]}"), response.body());
+            assertEquals(requests, stub.requests(), "the cached lines were searched again");
+        }
+    }
+
+    @Test
+    void rejectQueries() throws IOException, InterruptedException {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(0, 20);
+             ITParserServer server = newServer(stub)) {
+            assertEquals(400, query(server, "", " \n").statusCode(), "an empty query was accepted");
+            assertEquals(400, query(server, "?format=xml", "ens").statusCode(), "an unknown format was accepted");
+            assertEquals(400, query(server, "?order=size", "ens").statusCode(), "an unknown order was accepted");
+
+            stub.failConcordances("ens", 500);
+            HttpResponse<String> response = query(server, "", "ens");
+            assertEquals(502, response.statusCode(), "the failure was not reported");
+            assertTrue(response.body().contains("ens"), response.body());
+        }
+    }
+
+    @Test
+    void cutShortFailedResponse() throws IOException {
+        // a crawl which fails once the first entry has been streamed
+        Crawler crawler = new Crawler(URI.create("http://localhost/"), List.of(), 1) {
+            @Override
+            Crawler withLines(List<String> lines, EntryOrder order) {
+                return this;
+            }
+
+            @Override
+            public void crawl(EntrySink sink) throws IOException {
+                sink.accept(new ConsolidatedEntry(1, "work 1", "work 1, a", Set.of("abc")));
+                throw new IOException("the crawl failed");
+            }
+        };
+        try (ITParserServer server = new ITParserServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                crawler)) {
+            server.start();
+            assertThrows(IOException.class, () -> query(server, "", "ens"), "a truncated response was complete");
+        }
+    }
+
+    private static ITParserServer newServer(IndexThomisticusStub stub) throws IOException {
+        Crawler crawler = Crawler.newBuilder(List.of())
+                .endpoint(stub.uri())
+                .reuseSessions(true)
+                .retries(0)
+                .memoryCache(new MemoryCache(1_000))
+                .build();
+        ITParserServer server = new ITParserServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                crawler);
+        server.start();
+        return server;
+    }
+
+    private HttpResponse<String> query(ITParserServer server, String query, String lines)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + server.port() + ITParserServer.PATH + query))
+                .POST(HttpRequest.BodyPublishers.ofString(lines))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
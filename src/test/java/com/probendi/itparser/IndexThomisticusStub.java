@@ -0,0 +1,330 @@
+package com.probendi.itparser;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * A local stand-in for the <a href="https://www.corpusthomisticum.org/it/index.age">Index Thomisticus</a>.
+ * <p>
+ * The stub speaks the same protocol as the real site: a body-less 'new search' request opens a session whose ID
+ * is returned in a {@code Set-Cookie} header, and the 'term', 'forms', 'works' and 'concordances' requests are
+ * accepted only within a known session. Every request is answered after a configurable latency.
+ * <p>
+ * Concordances are replayed from {@code <term>.html} files of a fixture directory if such a file exists, or
+ * synthesized otherwise, with a configurable number of cases per term. Synthetic results are split into pages of
+ * {@code results.pageSize} cases, selected by {@code results.page}, and are streamed, so that pages of a million
+ * cases do not need to be held in memory.
+ */
+class IndexThomisticusStub implements AutoCloseable {
+
+    private static final String PATH = "/it/index.age";
+    private static final String[] WORKS = {"Super Sent.", "Summa contra Gentiles", "Summa Theologiae", "De veritate"};
+
+    static {
+        // otherwise Nagle's algorithm delays every small response by the client's delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final long latencyMillis;
+    private final ToIntFunction<String> cases;
+    private final Path fixtures;
+
+    private final Map<String, AtomicInteger> sessions = new ConcurrentHashMap<>();
+    private volatile int maxRequestsPerSession = Integer.MAX_VALUE;
+    private volatile int expiredSessionStatus = 403;
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile int failureStatus;
+    private volatile String failingTerm;
+    private volatile boolean ignorePages;
+    private volatile int capacity = Integer.MAX_VALUE;
+    private volatile int failingTermStatus;
+    private final AtomicInteger sessionIds = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * Starts a new stub which returns the same number of synthetic cases for every term.
+     *
+     * @param latencyMillis the time spent on every request
+     * @param casesPerTerm  the number of cases returned for every term
+     * @throws IOException if the server cannot be started
+     */
+    IndexThomisticusStub(long latencyMillis, int casesPerTerm) throws IOException {
+        this(latencyMillis, term -> casesPerTerm, null);
+    }
+
+    /**
+     * Starts a new stub on an ephemeral port.
+     *
+     * @param latencyMillis the time spent on every request
+     * @param cases         the number of synthetic cases returned for a term
+     * @param fixtures      the directory of the pages to be replayed, or {@code null}
+     * @throws IOException if the server cannot be started
+     */
+    IndexThomisticusStub(long latencyMillis, ToIntFunction<String> cases, Path fixtures) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.cases = cases;
+        this.fixtures = fixtures;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Makes the sessions expire after the given number of requests.
+     *
+     * @param maxRequestsPerSession the maximum number of requests accepted within a session
+     */
+    void expireSessionsAfter(int maxRequestsPerSession) {
+        expireSessionsAfter(maxRequestsPerSession, 403);
+    }
+
+    /**
+     * Makes the sessions expire after the given number of requests, answering the requests within an expired
+     * session with the given status code; a redirect points to the 'new search' page.
+     *
+     * @param maxRequestsPerSession the maximum number of requests accepted within a session
+     * @param status                the status code
+     */
+    void expireSessionsAfter(int maxRequestsPerSession, int status) {
+        this.expiredSessionStatus = status;
+        this.maxRequestsPerSession = maxRequestsPerSession;
+    }
+
+    /**
+     * Answers the next requests, whatever they are, with the given status code.
+     *
+     * @param count  the number of requests to fail
+     * @param status the status code
+     */
+    void failNextRequests(int count, int status) {
+        failureStatus = status;
+        failures.set(count);
+    }
+
+    /**
+     * Answers every 'concordances' request of the given term with the given status code.
+     *
+     * @param term   the term, or {@code null} to stop failing
+     * @param status the status code
+     */
+    void failConcordances(String term, int status) {
+        failingTermStatus = status;
+        failingTerm = term;
+    }
+
+    /**
+     * Makes the stub ignore the page requested, and return the first page instead.
+     */
+    void ignorePages() {
+        ignorePages = true;
+    }
+
+    /**
+     * Makes the stub slow down beyond the given number of concurrent requests, as a server whose requests queue up
+     * does: the latency grows in proportion to the requests in flight.
+     *
+     * @param capacity the number of concurrent requests served within the configured latency
+     */
+    void capacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    URI uri() {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + PATH);
+    }
+
+    int sessions() {
+        return sessionIds.get();
+    }
+
+    int requests() {
+        return requests.get();
+    }
+
+    int peakConcurrentRequests() {
+        return peak.get();
+    }
+
+    long bytesSent() {
+        return bytes.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        int concurrent = active.incrementAndGet();
+        peak.accumulateAndGet(concurrent, Math::max);
+        try (exchange; InputStream in = exchange.getRequestBody()) {
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            Thread.sleep(concurrent > capacity ? latencyMillis * concurrent / capacity : latencyMillis);
+
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                exchange.sendResponseHeaders(failureStatus, -1);
+                return;
+            }
+            String cookie = exchange.getRequestHeaders().getFirst("Cookie");
+            if (cookie == null) {
+                if (!body.isEmpty()) {
+                    exchange.sendResponseHeaders(403, -1);
+                    return;
+                }
+                String sessionId = "JSESSIONID=" + sessionIds.incrementAndGet();
+                sessions.put(sessionId, new AtomicInteger());
+                exchange.getResponseHeaders().add("Set-Cookie", sessionId + "; Path=/it");
+                respond(exchange, "<html><body>new search</body></html>");
+                return;
+            }
+            AtomicInteger sessionRequests = sessions.get(cookie);
+            if (sessionRequests == null || sessionRequests.incrementAndGet() > maxRequestsPerSession) {
+                sessions.remove(cookie);
+                if (expiredSessionStatus >= 300 && expiredSessionStatus < 400) {
+                    exchange.getResponseHeaders().add("Location", PATH);
+                }
+                exchange.sendResponseHeaders(expiredSessionStatus, -1);
+                return;
+            }
+
+            String term = term(body);
+            if (body.contains("Form.option.concordances=concordances") && term.equals(failingTerm)) {
+                exchange.sendResponseHeaders(failingTermStatus, -1);
+            } else if (body.contains("Form.option.concordances=concordances")) {
+                concordances(exchange, term, parameter(body, "results.pageSize", Integer.MAX_VALUE),
+                        ignorePages ? 1 : parameter(body, "results.page", 1));
+            } else if (body.contains("Form.option.terms=terms")
+                    || body.contains("Form.option.works=works")
+                    || body.contains("Form.option.options=options")) {
+                respond(exchange, "<html><body>" + term + "</body></html>");
+            } else {
+                exchange.sendResponseHeaders(400, -1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    private void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] b = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(200, b.length);
+        exchange.getResponseBody().write(b);
+        bytes.addAndGet(b.length);
+    }
+
+    private static int parameter(String body, String name, int defaultValue) {
+        int n = body.indexOf("&" + name + "=");
+        if (n == -1) {
+            return defaultValue;
+        }
+        n += name.length() + 2;
+        int m = body.indexOf('&', n);
+        return Integer.parseInt(body.substring(n, m == -1 ? body.length() : m));
+    }
+
+    private static String term(String body) {
+        int n = body.indexOf('&');
+        return URLDecoder.decode(body.substring("text=".length(), n == -1 ? body.length() : n), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Replays the fixture of the given term, or streams a synthetic page where every two consecutive cases share
+     * the same place.
+     */
+    private void concordances(HttpExchange exchange, String term, int pageSize, int page) throws IOException {
+        if (fixtures != null) {
+            Path fixture = fixtures.resolve(term.replaceAll("[^A-Za-z0-9]", "_") + ".html");
+            if (Files.exists(fixture)) {
+                respond(exchange, Files.readString(fixture));
+                return;
+            }
+        }
+
+        int n = cases.applyAsInt(term);
+        // distinct terms share no places, unless their hashes collide
+        int base = Math.floorMod(term.hashCode(), 1000) * 1_000_000;
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(200, 0);
+        CountingWriter counter = new CountingWriter(exchange);
+        try (Writer out = new BufferedWriter(counter, 1 << 16)) {
+            out.write("<html><body>\n<p>Found " + n + " cases in " + (n + 1) / 2 + " places</p>\n");
+            long first = (long) (page - 1) * pageSize + 1;
+            long last = Math.min(n, (long) page * pageSize);
+            for (int i = (int) first; i <= last; i++) {
+                int place = base + (i + 1) / 2;
+                String work = WORKS[place % WORKS.length];
+                String position = work + ", lib. " + place + " q. " + i + ".";
+                out.write(line(i, place, position, term + " text " + i));
+                out.write('\n');
+            }
+            out.write("</body></html>\n");
+        }
+        bytes.addAndGet(counter.count);
+    }
+
+    /**
+     * Returns a concordance line formatted as the {@code Index Thomisticus} does.
+     */
+    static String line(int caseNumber, int placeNumber, String position, String text) {
+        return "<p title=\"" + position + "\">" +
+                "<span class=\"caseNumber\">Case " + caseNumber + ".&nbsp;</span>" +
+                "<span class=\"ref\">" +
+                "<span class=\"placeNumber\">Place " + placeNumber + ".&nbsp;</span>" +
+                position + "&nbsp;</span>" +
+                "<b>" + text + "</b>&nbsp;[...]" +
+                "</p>";
+    }
+
+    /**
+     * Writes UTF-8 to the response's body, counting the characters written.
+     */
+    private static final class CountingWriter extends OutputStreamWriter {
+
+        private long count;
+
+        CountingWriter(HttpExchange exchange) {
+            super(exchange.getResponseBody(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            super.write(cbuf, off, len);
+            count += len;
+        }
+    }
+}
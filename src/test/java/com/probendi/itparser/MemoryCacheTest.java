@@ -0,0 +1,51 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MemoryCacheTest {
+
+    @Test
+    void evictLeastRecentlyUsed() {
+        MemoryCache cache = new MemoryCache(10);
+        cache.put("a", entries(4));
+        cache.put("b", entries(4));
+        assertNotNull(cache.get("a"), "a line was evicted too early");
+
+        cache.put("c", entries(4));
+        assertNull(cache.get("b"), "the least recently used line was not evicted");
+        assertNotNull(cache.get("a"), "a recently used line was evicted");
+        assertEquals(8, cache.size(), "wrong number of entries");
+        assertEquals(2, cache.lines(), "wrong number of lines");
+
+        cache.put("d", entries(11));
+        assertNull(cache.get("d"), "a line larger than the cache was cached");
+        assertEquals(2, cache.hits(), "wrong number of hits");
+        assertEquals(2, cache.misses(), "wrong number of misses");
+    }
+
+    @Test
+    void replaceLine() {
+        MemoryCache cache = new MemoryCache(10);
+        cache.put("a", entries(4));
+        cache.put("a", entries(6));
+        assertEquals(6, cache.size(), "wrong number of entries");
+        assertThrows(UnsupportedOperationException.class, () -> cache.get("a").clear(),
+                "the cached entries can be modified");
+    }
+
+    private static Set<Entry> entries(int size) {
+        Set<Entry> entries = new TreeSet<>();
+        for (int i = 1; i <= size; i++) {
+            entries.add(new Entry(i, i, "Super Sent.", "Super Sent., lib. 1", "text " + i));
+        }
+        return entries;
+    }
+}
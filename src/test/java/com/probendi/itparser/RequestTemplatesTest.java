@@ -0,0 +1,83 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestTemplatesTest {
+
+    private final RequestTemplates templates = new RequestTemplates(0, 2, "&exhaustive=false", 100);
+
+    @Test
+    void buildBodies() throws Exception {
+        assertEquals("text=ens&Form.option.terms=terms", body(templates.term("ens")));
+        assertEquals("text=ens&Form.option.works=works" +
+                        "&terms%5B0%5D.listedLemmata%5B0%5D.listedFormae%5Bens%5D.selected=on" +
+                        "&terms%5B0%5D.listedLemmata%5B0%5D.listedFormae%5Bentis%5D.selected=on",
+                body(templates.forms(new String[]{"ens", "ens", "entis"})));
+        assertEquals("text=ens&Form.option.options=options&listedWorks%5B0%5D.selected=on" +
+                        "&listedWorks%5B1%5D.selected=on&listedWorks%5B2%5D.selected=on",
+                body(templates.works("ens")));
+        assertEquals("text=ens&exhaustive=false&results.pageSize=100&Form.option.concordances=concordances",
+                body(templates.concordances("ens", 1)));
+        assertEquals("text=ens&exhaustive=false&results.pageSize=100&Form.option.concordances=concordances" +
+                "&results.page=3", body(templates.concordances("ens", 3)));
+    }
+
+    @Test
+    void encodeTerms() throws Exception {
+        HttpRequest.BodyPublisher publisher = templates.term("id quod est");
+        String body = body(publisher);
+        assertEquals("text=id+quod+est&Form.option.terms=terms", body);
+        assertEquals(body.length(), publisher.contentLength(), "wrong content length");
+        assertTrue(body(templates.term("dīvĭdo")).startsWith("text=d%C4%AB"), "the term was not encoded in UTF-8");
+    }
+
+    @Test
+    void keyOptions() {
+        assertEquals(templates.key(), new RequestTemplates(0, 2, "&exhaustive=false", 50).key());
+        assertNotEquals(templates.key(), new RequestTemplates(0, 3, "&exhaustive=false", 100).key());
+        assertNotEquals(templates.key(), new RequestTemplates(0, 2, "&exhaustive=true", 100).key());
+    }
+
+    /**
+     * Returns the body published by the given publisher, which can be subscribed to more than once.
+     */
+    private static String body(HttpRequest.BodyPublisher publisher) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletableFuture<String> body = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                out.writeBytes(bytes);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                body.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                body.complete(out.toString(StandardCharsets.US_ASCII));
+            }
+        });
+        return body.get();
+    }
+}
@@ -0,0 +1,105 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponseArchiveIT {
+
+    private static final List<String> FIRST_PAGE = List.of("<html><body>",
+            "<div>Found 2 cases in 1 places</div>",
+            IndexThomisticusStub.line(1, 7, "Super Sent., lib. 1", "æternitas"),
+            "</body></html>");
+    private static final List<String> SECOND_PAGE = List.of("<html><body>",
+            IndexThomisticusStub.line(2, 7, "Super Sent., lib. 1", "ens"),
+            "</body></html>");
+
+    @Test
+    void archiveAndReplay(@TempDir Path dir) throws IOException {
+        ResponseArchive archive = new ResponseArchive(dir);
+        ResponseArchive.Recorder recorder = archive.recorder();
+        recorder.page();
+        FIRST_PAGE.forEach(recorder);
+        recorder.page();
+        SECOND_PAGE.forEach(recorder);
+        archive.put("ens 78\noptions", "ens 78", recorder);
+
+        List<String> lines = new ArrayList<>();
+        assertTrue(new ResponseArchive(dir).replay("ens 78\noptions", lines::add), "the line was not archived");
+        List<String> expected = new ArrayList<>(FIRST_PAGE);
+        expected.addAll(SECOND_PAGE);
+        assertEquals(expected, lines, "pages do not match");
+        assertFalse(archive.replay("ens 79\noptions", lines::add), "unexpected line");
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count(), "the temporary file was not renamed");
+        }
+    }
+
+    @Test
+    void archiveConcurrently(@TempDir Path dir) throws IOException, InterruptedException, ExecutionException {
+        ResponseArchive archive = new ResponseArchive(dir);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tasks.add(() -> {
+                ResponseArchive.Recorder recorder = archive.recorder();
+                recorder.page();
+                FIRST_PAGE.forEach(recorder);
+                start.await();
+                // the same line, e.g., a duplicate input line, archived by every thread at the same time
+                archive.put("ens 78\noptions", "ens 78", recorder);
+                return null;
+            });
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Void>> futures = tasks.stream().map(executor::submit).toList();
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        }
+
+        List<String> lines = new ArrayList<>();
+        assertTrue(archive.replay("ens 78\noptions", lines::add), "the line was not archived");
+        assertEquals(FIRST_PAGE, lines, "pages do not match");
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count(), "the temporary files were not renamed");
+        }
+    }
+
+    @Test
+    void replayCorrupted(@TempDir Path dir) throws IOException {
+        ResponseArchive archive = new ResponseArchive(dir);
+        ResponseArchive.Recorder recorder = archive.recorder();
+        recorder.page();
+        FIRST_PAGE.forEach(recorder);
+        archive.put("ens 78\noptions", "ens 78", recorder);
+
+        Path file;
+        try (Stream<Path> files = Files.list(dir)) {
+            file = files.findFirst().orElseThrow();
+        }
+        byte[] b = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(b, b.length - 10));
+        assertThrows(IOException.class, () -> archive.replay("ens 78\noptions", line -> {
+        }), "a truncated page was replayed");
+    }
+}
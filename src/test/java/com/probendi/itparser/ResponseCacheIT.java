@@ -0,0 +1,99 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ResponseCacheIT {
+
+    private static final Set<Entry> ENTRIES = new TreeSet<>(List.of(
+            new Entry(1, 10, "Super Sent.", "Super Sent., lib. 1 q. 1", "æternitas"),
+            new Entry(2, 10, "Super Sent.", "Super Sent., lib. 1 q. 1", "ens"),
+            new Entry(3, 11, "De veritate", "De veritate, q. 1 a. 1 co.", "quod primo intellectus concipit")));
+
+    @Test
+    void putAndGet(@TempDir Path dir) throws IOException {
+        ResponseCache cache = new ResponseCache(dir, Duration.ofHours(1), 1 << 20);
+        assertNull(cache.get("ens 78"), "unexpected hit");
+
+        cache.put("ens 78", ENTRIES);
+        assertEquals(List.copyOf(ENTRIES), List.copyOf(cache.get("ens 78")), "entries do not match");
+        assertNull(cache.get("ens 79"), "unexpected hit");
+    }
+
+    @Test
+    void expire(@TempDir Path dir) throws IOException, InterruptedException {
+        ResponseCache cache = new ResponseCache(dir, Duration.ofMillis(1), 1 << 20);
+        cache.put("ens", ENTRIES);
+        Thread.sleep(10);
+        assertNull(cache.get("ens"), "the entries did not expire");
+        assertEquals(0, count(dir), "the expired entries were not removed");
+    }
+
+    @Test
+    void evictLeastRecentlyUsed(@TempDir Path dir) throws IOException, InterruptedException {
+        ResponseCache cache = new ResponseCache(dir, Duration.ofHours(1), 1 << 20);
+        cache.put("a", ENTRIES);
+        long size;
+        try (Stream<Path> files = Files.list(dir)) {
+            size = Files.size(files.findFirst().orElseThrow());
+        }
+
+        cache = new ResponseCache(dir, Duration.ofHours(1), 2 * size);
+        Thread.sleep(20);
+        cache.put("b", ENTRIES);
+        Thread.sleep(20);
+        cache.get("a");
+        Thread.sleep(20);
+        cache.put("c", ENTRIES);
+
+        assertEquals(2, count(dir), "the cache was not evicted");
+        assertNull(cache.get("b"), "the least recently used entries were not evicted");
+        assertEquals(3, cache.get("a").size(), "the most recently used entries were evicted");
+    }
+
+    @Test
+    void evictWhileGrowing(@TempDir Path dir) throws IOException {
+        ResponseCache cache = new ResponseCache(dir, Duration.ofHours(1), 1 << 20);
+        cache.put("a", ENTRIES);
+        long size;
+        try (Stream<Path> files = Files.list(dir)) {
+            size = Files.size(files.findFirst().orElseThrow());
+        }
+
+        cache = new ResponseCache(dir, Duration.ofHours(1), 3 * size);
+        for (int i = 0; i < 10; i++) {
+            cache.put(String.valueOf(i), ENTRIES);
+        }
+        assertEquals(3, count(dir), "the cache was not evicted");
+        assertEquals(3, cache.get("9").size(), "the most recently used entries were evicted");
+    }
+
+    @Test
+    void putFailing(@TempDir Path dir) throws IOException {
+        ResponseCache cache = new ResponseCache(dir, Duration.ofHours(1), 1 << 20);
+        Set<Entry> entries = new HashSet<>(Arrays.asList(ENTRIES.iterator().next(), null));
+        assertThrows(RuntimeException.class, () -> cache.put("ens", entries));
+        assertEquals(0, count(dir), "the temporary file was not deleted");
+    }
+
+    private static long count(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedCrawlIT {
+
+    private static final List<String> LINES = List.of(
+            "ens 78 79 80",
+            "#26153",
+            "\"id quod est\"",
+            "\"ea quae sunt\"",
+            "\"omnia sunt\"",
+            "esse 12 13",
+            "#12345",
+            "\"in quantum\"");
+
+    @Test
+    void crawlWithWorkers(@TempDir Path dir) throws Exception {
+        try (IndexThomisticusStub stub = new IndexThomisticusStub(20, 20)) {
+            List<String> expected = toCsv(new Crawler(stub.uri(), LINES, 1).crawl());
+            int sessions = stub.sessions();
+
+            List<ShardedCrawl> workers = List.of(
+                    new ShardedCrawl(dir, LINES, Duration.ofMinutes(1)),
+                    new ShardedCrawl(dir, LINES, Duration.ofMinutes(1)));
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<Void>> futures = new ArrayList<>();
+                for (ShardedCrawl worker : workers) {
+                    futures.add(executor.submit(() -> {
+                        worker.work(new Crawler(stub.uri(), List.of(), 1), 2);
+                        return null;
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+            }
+            assertEquals(sessions + LINES.size(), stub.sessions(), "a line was searched more than once");
+            assertEquals(LINES.size(), workers.get(0).crawled() + workers.get(1).crawled(), "lines were lost");
+            assertTrue(workers.get(0).crawled() > 0 && workers.get(1).crawled() > 0, "a worker sat idle");
+
+            assertTrue(workers.get(0).leaseMerge(), "the merge was not leased");
+            assertFalse(workers.get(1).leaseMerge(), "the merge was leased twice");
+            List<String> merged = new ArrayList<>();
+            workers.get(0).merge(EntryOrder.CASE, new EntrySink() {
+                @Override
+                public void accept(ConsolidatedEntry entry) {
+                    merged.add(entry.toCsv());
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+            assertEquals(expected, merged, "entries do not match");
+            assertFalse(workers.get(1).leaseMerge(), "the shards were merged twice");
+        }
+    }
+
+    @Test
+    void takeOverExpiredLease(@TempDir Path dir) throws IOException {
+        ShardedCrawl crawl = new ShardedCrawl(dir, LINES, Duration.ofSeconds(1));
+        Path expired = dir.resolve("leases").resolve("0.lock");
+        Files.writeString(expired, "worker");
+        Files.setLastModifiedTime(expired, FileTime.fromMillis(System.currentTimeMillis() - 2_000));
+        assertTrue(crawl.lease(expired), "the expired lease was not taken over");
+
+        Path held = dir.resolve("leases").resolve("1.lock");
+        Files.writeString(held, "worker");
+        assertFalse(crawl.lease(held), "a held lease was taken over");
+    }
+
+    @Test
+    void takeOverExpiredLeaseOnce(@TempDir Path dir) throws Exception {
+        List<ShardedCrawl> workers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            workers.add(new ShardedCrawl(dir, LINES, Duration.ofSeconds(1)));
+        }
+        for (int round = 0; round < 20; round++) {
+            Path expired = dir.resolve("leases").resolve(round + ".lock");
+            Files.writeString(expired, "worker");
+            Files.setLastModifiedTime(expired, FileTime.fromMillis(System.currentTimeMillis() - 2_000));
+            CountDownLatch start = new CountDownLatch(1);
+            int leased = 0;
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (ShardedCrawl worker : workers) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return worker.lease(expired);
+                    }));
+                }
+                start.countDown();
+                for (Future<Boolean> future : futures) {
+                    leased += future.get() ? 1 : 0;
+                }
+            }
+            assertEquals(1, leased, "the expired lease was not taken over by a single worker");
+        }
+    }
+
+    @Test
+    void releaseOwnLeaseOnly(@TempDir Path dir) throws Exception {
+        ShardedCrawl crawl = new ShardedCrawl(dir, LINES, Duration.ofSeconds(1));
+        Path lock = dir.resolve("leases").resolve("0.lock");
+        assertTrue(crawl.lease(lock), "the lease was not leased");
+        // the lease expires, and another worker takes it over
+        Files.setLastModifiedTime(lock, FileTime.fromMillis(System.currentTimeMillis() - 2_000));
+        ShardedCrawl other = new ShardedCrawl(dir, LINES, Duration.ofSeconds(1));
+        assertTrue(other.lease(lock), "the expired lease was not taken over");
+        assertEquals(1, other.takenOver(), "wrong number of leases taken over");
+
+        crawl.release(lock);
+        assertTrue(Files.exists(lock), "the lease of another worker was released");
+    }
+
+    @Test
+    void rejectOtherLines(@TempDir Path dir) throws IOException {
+        new ShardedCrawl(dir, LINES, Duration.ofMinutes(1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ShardedCrawl(dir, LINES.subList(0, 2), Duration.ofMinutes(1)),
+                "the crawl of other lines was joined");
+    }
+
+    private static List<String> toCsv(List<ConsolidatedEntry> entries) {
+        return entries.stream().map(ConsolidatedEntry::toCsv).toList();
+    }
+}
@@ -0,0 +1,32 @@
+package com.probendi.itparser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class TextArenaTest {
+
+    @Test
+    void addOnce() {
+        TextArena arena = new TextArena(0);
+        int id = arena.add("ens et unum convertuntur");
+        assertEquals(id, arena.add(new String("ens et unum convertuntur")), "the text was stored twice");
+        assertNotEquals(id, arena.add("ens et verum convertuntur"), "different texts share an ID");
+        assertEquals("ens et unum convertuntur", arena.get(id), "texts do not match");
+    }
+
+    @Test
+    void grow() {
+        TextArena arena = new TextArena(0);
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, arena.add("text " + i), "wrong ID");
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, arena.add("text " + i), "the text was stored twice");
+            assertEquals("text " + i, arena.get(i), "texts do not match");
+        }
+        // the empty text takes no characters
+        assertEquals("", arena.get(arena.add("")), "texts do not match");
+    }
+}